@@ -0,0 +1,83 @@
+package slitheria.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One entity tick (EntitySystem.update) with 10,000 enemies on a
+ * generated 1000x1000 map: one spawn point per 100 tiles. The budget is
+ * 16.7 ms per tick at 60 Hz.
+ *
+ * The player steps every 5th tick, as fast as Game lets it, alternating
+ * up and down, so the score includes the flow field rebuilds a moving
+ * player causes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntitySystemBenchmark {
+    private static final int PLAYER_MOVE_TICKS = 5;
+
+    @Param({"1000"})
+    public int size;
+
+    @Param({"100"})
+    public int tilesPerSpawn;
+
+    // Fixed, so every run measures the same map
+    @Param({"42"})
+    public long seed;
+
+    private File file;
+    private Object map;
+    private Object entities;
+    private int tick = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        String content = (String) Slitheria.GENERATE_MAP_WITH_SPAWNS.invokeExact(size, size, seed, tilesPerSpawn);
+        file = File.createTempFile("entities", ".txt");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+
+        map = (Object) Slitheria.NEW_MAP.invokeExact(file.getAbsolutePath(), Slitheria.VIEWPORT_WIDTH, Slitheria.VIEWPORT_HEIGHT);
+        entities = (Object) Slitheria.ENTITIES.invokeExact(map);
+        int count = (int) Slitheria.ENTITY_COUNT.invokeExact(entities);
+        if(count < size * size / tilesPerSpawn){
+            throw new IllegalStateException("Only " + count + " enemies spawned");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public void tick() throws Throwable {
+        if(++tick % PLAYER_MOVE_TICKS == 0){
+            if((tick / PLAYER_MOVE_TICKS & 1) == 0) Slitheria.UP.invokeExact(map);
+            else Slitheria.DOWN.invokeExact(map);
+        }
+        Slitheria.UPDATE_ENTITIES.invokeExact(entities, map);
+    }
+}
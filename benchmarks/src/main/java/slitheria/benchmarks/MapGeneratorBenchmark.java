@@ -0,0 +1,38 @@
+package slitheria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MapGenerator.generateMap on square maps. Sizes above 256 take the tiled
+ * solver; 75-100 is the range the game generates by default.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapGeneratorBenchmark {
+    @Param({"32", "100", "256", "512"})
+    public int size;
+
+    // Fixed, so every run measures the same maps
+    @Param({"42"})
+    public long seed;
+
+    @Benchmark
+    public String generateMap() throws Throwable {
+        return (String) Slitheria.GENERATE_MAP.invokeExact(size, size, seed);
+    }
+}
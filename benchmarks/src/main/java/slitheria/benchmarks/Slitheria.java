@@ -0,0 +1,73 @@
+package slitheria.benchmarks;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Entry points into the game for the benchmarks.
+ *
+ * The game's classes live in the default package, which code in a named
+ * package (as JMH requires) cannot name. They are bound here once through
+ * method handles; static final handles are constants to the JIT, so a
+ * call through one compiles to a direct call.
+ */
+final class Slitheria {
+    static final MethodHandle GENERATE_MAP;   // (int width, int height, long seed) -> String
+    static final MethodHandle GENERATE_MAP_WITH_SPAWNS;  // (int width, int height, long seed, int tilesPerSpawn) -> String
+    static final MethodHandle NEW_MAP;        // (String path, int viewportWidth, int viewportHeight) -> Object
+    static final MethodHandle UP, DOWN, LEFT, RIGHT;  // (Object map) -> void
+    static final MethodHandle ENTITIES;       // (Object map) -> Object, the map's EntitySystem
+    static final MethodHandle ENTITY_COUNT;   // (Object entities) -> int
+    static final MethodHandle UPDATE_ENTITIES;  // (Object entities, Object map) -> void
+
+    static final int VIEWPORT_WIDTH = 50;
+    static final int VIEWPORT_HEIGHT = 20;
+
+    static {
+        try{
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> generator = Class.forName("MapGenerator");
+            Class<?> stats = Class.forName("WaveFunctionCollapse$Stats");
+            Class<?> map = Class.forName("VisualizedMap");
+            Class<?> entities = Class.forName("EntitySystem");
+
+            MethodHandle generate = lookup.findStatic(generator, "generateMap",
+                MethodType.methodType(String.class, int.class, int.class, long.class, stats));
+            GENERATE_MAP = MethodHandles.insertArguments(generate, 3, (Object) null);
+            MethodHandle generateWithSpawns = lookup.findStatic(generator, "generateMap",
+                MethodType.methodType(String.class, int.class, int.class, long.class, int.class, stats));
+            GENERATE_MAP_WITH_SPAWNS = MethodHandles.insertArguments(generateWithSpawns, 4, (Object) null);
+
+            NEW_MAP = lookup.findConstructor(map, MethodType.methodType(void.class, String.class, int.class, int.class))
+                .asType(MethodType.methodType(Object.class, String.class, int.class, int.class));
+
+            MethodType move = MethodType.methodType(void.class);
+            MethodType erased = MethodType.methodType(void.class, Object.class);
+            UP = lookup.findVirtual(map, "up", move).asType(erased);
+            DOWN = lookup.findVirtual(map, "down", move).asType(erased);
+            LEFT = lookup.findVirtual(map, "left", move).asType(erased);
+            RIGHT = lookup.findVirtual(map, "right", move).asType(erased);
+
+            ENTITIES = lookup.findGetter(map, "entities", entities).asType(MethodType.methodType(Object.class, Object.class));
+            ENTITY_COUNT = lookup.findVirtual(entities, "getCount", MethodType.methodType(int.class))
+                .asType(MethodType.methodType(int.class, Object.class));
+            UPDATE_ENTITIES = lookup.findVirtual(entities, "update", MethodType.methodType(void.class, map))
+                .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        }catch(ReflectiveOperationException e){
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Slitheria(){
+    }
+
+    // A file under maps/, run from the repository root or from benchmarks/
+    static String mapPath(String name){
+        File file = new File("maps", name);
+        if(!file.isFile()) file = new File("../maps", name);
+        if(!file.isFile()) throw new IllegalStateException("Cannot find maps/" + name + " from " + new File("").getAbsolutePath());
+        return file.getAbsolutePath();
+    }
+}
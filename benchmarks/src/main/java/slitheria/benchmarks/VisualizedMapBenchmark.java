@@ -0,0 +1,76 @@
+package slitheria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading, rendering and moving on maps/map14.txt.
+ *
+ * Each move benchmark steps one way and back, so the player stays on the
+ * same two tiles however many operations run; the score covers both steps.
+ * The player starts on the open space with the most clearance, so both
+ * steps succeed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VisualizedMapBenchmark {
+    private static final String MAP = "map14.txt";
+
+    private String path;
+    private Object map;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        path = Slitheria.mapPath(MAP);
+        map = (Object) Slitheria.NEW_MAP.invokeExact(path, Slitheria.VIEWPORT_WIDTH, Slitheria.VIEWPORT_HEIGHT);
+    }
+
+    @Benchmark
+    public Object construct() throws Throwable {
+        return (Object) Slitheria.NEW_MAP.invokeExact(path, Slitheria.VIEWPORT_WIDTH, Slitheria.VIEWPORT_HEIGHT);
+    }
+
+    @Benchmark
+    public String render(){
+        return map.toString();
+    }
+
+    @Benchmark
+    public void up() throws Throwable {
+        Slitheria.UP.invokeExact(map);
+        Slitheria.DOWN.invokeExact(map);
+    }
+
+    @Benchmark
+    public void down() throws Throwable {
+        Slitheria.DOWN.invokeExact(map);
+        Slitheria.UP.invokeExact(map);
+    }
+
+    @Benchmark
+    public void left() throws Throwable {
+        Slitheria.LEFT.invokeExact(map);
+        Slitheria.RIGHT.invokeExact(map);
+    }
+
+    @Benchmark
+    public void right() throws Throwable {
+        Slitheria.RIGHT.invokeExact(map);
+        Slitheria.LEFT.invokeExact(map);
+    }
+}
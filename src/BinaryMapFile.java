@@ -0,0 +1,223 @@
+/**
+ * Compact binary map format, loaded through a memory-mapped file.
+ *
+ * Layout (big-endian):
+ *   int    magic 'SLMP'
+ *   short  version
+ *   short  description length, then that many UTF-8 bytes
+ *   int    rows, int columns
+ *   int    icon x, int icon y (-1 if the map has no 'x')
+ *   short  portal pair count, then per pair: byte id, int x1, y1, x2, y2
+ *   int    spawn point count, then per point: int x, y ('S' tiles; version 2+)
+ *   byte[] rows * columns tiles, row by row, one ASCII byte per tile
+ *
+ * The portal table, spawn points and icon position are resolved when the
+ * file is written, so loading never has to scan the tiles.
+ *
+ * Usage: java BinaryMapFile [map.txt ...]
+ * Converts each text map to a .bin file next to it (all of maps/ by default).
+ *
+ * Dependencies:
+ * (JCL) FileChannel.java, MappedByteBuffer.java, Files.java
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class BinaryMapFile {
+    public static final int MAGIC = 0x534C4D50; // "SLMP"
+    public static final short VERSION = 2; // 2 added the spawn point table
+    public static final String EXTENSION = ".bin";
+
+    public String description;
+    public char[][] tiles;
+    public int iconX = -1, iconY = -1;
+    public List<Portal[]> portalPairs = new ArrayList<>();
+    public List<int[]> spawnPoints = new ArrayList<>();
+
+    // -- Reading --
+
+    public static BinaryMapFile read(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a binary map file: " + path);
+            }
+            short version = buffer.getShort();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported binary map version " + version + ": " + path);
+            }
+
+            BinaryMapFile file = new BinaryMapFile();
+            byte[] description = new byte[buffer.getShort()];
+            buffer.get(description);
+            file.description = new String(description, StandardCharsets.UTF_8);
+
+            int rows = buffer.getInt();
+            int cols = buffer.getInt();
+            file.iconX = buffer.getInt();
+            file.iconY = buffer.getInt();
+
+            int pairs = buffer.getShort();
+            for (int i = 0; i < pairs; i++) {
+                char id = (char) buffer.get();
+                Portal first = new Portal(buffer.getInt(), buffer.getInt(), id);
+                Portal second = new Portal(buffer.getInt(), buffer.getInt(), id);
+                file.portalPairs.add(new Portal[]{first, second});
+            }
+
+            if (version >= 2) {
+                int spawns = buffer.getInt();
+                for (int i = 0; i < spawns; i++) {
+                    file.spawnPoints.add(new int[]{buffer.getInt(), buffer.getInt()});
+                }
+            }
+
+            // Tiles are ASCII, so each byte widens straight to a char
+            file.tiles = new char[rows][cols];
+            byte[] row = new byte[cols];
+            for (int r = 0; r < rows; r++) {
+                buffer.get(row);
+                char[] tileRow = file.tiles[r];
+                for (int c = 0; c < cols; c++) {
+                    tileRow[c] = (char) row[c];
+                    // Version 1 files have no spawn table
+                    if (version < 2 && tileRow[c] == 'S') file.spawnPoints.add(new int[]{c, r});
+                }
+            }
+            return file;
+        }
+    }
+
+    // -- Writing --
+
+    /**
+     * Parses a map in the text format (see maps/details.txt), pairing portals
+     * in reading order the same way VisualizedMap does.
+     */
+    public static BinaryMapFile parseText(String path) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(path));
+        BinaryMapFile file = new BinaryMapFile();
+        file.description = lines.get(0);
+        int rows = Integer.parseInt(lines.get(1).trim());
+        int cols = Integer.parseInt(lines.get(2).trim());
+
+        file.tiles = new char[rows][];
+        Map<Character, Portal> pendingPortals = new HashMap<>();
+        for (int r = 0; r < rows; r++) {
+            char[] row = lines.get(r + 3).toCharArray();
+            if (row.length != cols) {
+                throw new IOException("Row " + r + " has " + row.length + " columns, expected " + cols + ": " + path);
+            }
+            for (int c = 0; c < cols; c++) {
+                if (row[c] == 'x') {
+                    file.iconX = c;
+                    file.iconY = r;
+                }
+                if (row[c] == 'S') {
+                    file.spawnPoints.add(new int[]{c, r});
+                }
+                if (Character.isDigit(row[c])) {
+                    Portal portal = new Portal(c, r, row[c]);
+                    Portal pending = pendingPortals.remove(row[c]);
+                    if (pending == null) {
+                        pendingPortals.put(row[c], portal);
+                    } else {
+                        file.portalPairs.add(new Portal[]{pending, portal});
+                    }
+                }
+            }
+            file.tiles[r] = row;
+        }
+        return file;
+    }
+
+    public void write(String path) throws IOException {
+        int rows = tiles.length;
+        int cols = tiles[0].length;
+        byte[] descriptionBytes = description.getBytes(StandardCharsets.UTF_8);
+
+        int size = 4 + 2 + 2 + descriptionBytes.length + 4 * 4 + 2 + portalPairs.size() * 17
+                 + 4 + spawnPoints.size() * 8 + rows * cols;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) descriptionBytes.length);
+        buffer.put(descriptionBytes);
+        buffer.putInt(rows);
+        buffer.putInt(cols);
+        buffer.putInt(iconX);
+        buffer.putInt(iconY);
+
+        buffer.putShort((short) portalPairs.size());
+        for (Portal[] pair : portalPairs) {
+            buffer.put((byte) pair[0].getID());
+            buffer.putInt(pair[0].getX());
+            buffer.putInt(pair[0].getY());
+            buffer.putInt(pair[1].getX());
+            buffer.putInt(pair[1].getY());
+        }
+
+        buffer.putInt(spawnPoints.size());
+        for (int[] point : spawnPoints) {
+            buffer.putInt(point[0]);
+            buffer.putInt(point[1]);
+        }
+
+        for (char[] row : tiles) {
+            for (char tile : row) {
+                buffer.put((byte) tile);
+            }
+        }
+
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    // map14.txt -> map14.bin
+    public static String binaryPathFor(String textPath) {
+        return textPath.substring(0, textPath.length() - 4) + EXTENSION;
+    }
+
+    public static void convert(String textPath) throws IOException {
+        parseText(textPath).write(binaryPathFor(textPath));
+    }
+
+    public static void main(String[] args) {
+        List<String> paths = new ArrayList<>(Arrays.asList(args));
+        if (paths.isEmpty()) {
+            File[] files = new File("maps").listFiles((dir, name) -> name.matches("map\\d+\\.txt"));
+            if (files != null) {
+                for (File file : files) paths.add(file.getPath());
+            }
+        }
+
+        for (String path : paths) {
+            try {
+                convert(path);
+                System.out.println("Converted " + path + " -> " + binaryPathFor(path));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error converting " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // A binary copy is only used while it is at least as new as its text source
+    public static boolean isUsableFor(File binary, File text) {
+        return binary.isFile() && (!text.exists() || binary.lastModified() >= text.lastModified());
+    }
+}
@@ -1,30 +1,39 @@
-import java.util.Random;
+public class Enemy extends Entity{
+    // Ticks waited between steps: the player's move delay rounded up to whole
+    // ticks, so an enemy is never faster than the player (every 5th tick at 60 Hz)
+    private static final int MOVE_DELAY =
+            (int) ((Game.MOVE_DELAY * 1_000_000 * Game.DEFAULT_FPS + 999_999_999) / 1_000_000_000) - 1;
 
-abstract class Entity{
-    protected int x, y;
-    protected char symbol;
+    // Neighbour order: down, right, up, left
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {1, 0, -1, 0};
 
-    public Entity(int x, int y, char symbol){
-        this.x = x;
-        this.y = y;
-        this.symbol = symbol;
+    public Enemy(){
+        super('E');
     }
 
-    public abstract void update(VisualizedMap map);
-}
-
-public class Enemy extends Entity{
-    private Random random = new Random();
-    private int moveDelay = 0;
+    @Override
+    public void update(EntitySystem entities, int id, VisualizedMap map){
+        if(entities.timer[id]++ < MOVE_DELAY){
+            return;
+        }
+        entities.timer[id] = 0;
 
-    public Enemy(int x, int y){
-        super(x, y, 'E');
-    }
+        // Chase along the shared flow field when in range: one lookup
+        int step = entities.flow.nextStep(entities.x[id], entities.y[id]);
+        if(step >= 0){
+            entities.state[id] = EntitySystem.CHASING;
+            entities.moveTo(id, entities.flow.x(step), entities.flow.y(step));
+            return;
+        }
 
-    @Override
-    public void update(VisualizedMap map){
-        if(moveDelay++ >= 3){
-            moveDelay = 0;
+        // Otherwise wander: one step in a random direction, if it is not a wall
+        entities.state[id] = EntitySystem.WANDERING;
+        int dir = entities.nextRandom(4);
+        int nx = entities.x[id] + DX[dir];
+        int ny = entities.y[id] + DY[dir];
+        if(map.validToMove(nx, ny)){
+            entities.moveTo(id, nx, ny);
         }
     }
 }
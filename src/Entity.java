@@ -0,0 +1,16 @@
+/**
+ * Behaviour of one kind of entity. The entities themselves are rows in an
+ * EntitySystem's arrays; an Entity holds no per-entity state and updates
+ * whichever row it is given.
+ */
+public abstract class Entity{
+    protected final char symbol;
+
+    public Entity(char symbol){
+        this.symbol = symbol;
+    }
+
+    public char getSymbol(){ return symbol; }
+
+    public abstract void update(EntitySystem entities, int id, VisualizedMap map);
+}
@@ -0,0 +1,178 @@
+import java.util.Arrays;
+
+/**
+ * All entities on a map, stored as a struct of arrays.
+ *
+ * Entity i is row i of the parallel arrays (kind, position, state,
+ * timer); there is no object per entity. Each kind's behaviour is an
+ * Entity object that updates whichever row it is handed, so one tick is a
+ * straight pass over the arrays.
+ *
+ * After every tick the entities are bucketed into a spatial hash of
+ * BUCKET_SIZE x BUCKET_SIZE tile cells (linked lists threaded through an
+ * int array), so finding the entities on a tile or inside the viewport
+ * only touches the buckets there.
+ *
+ * Randomness comes from one xorshift stream seeded per map, so a run is
+ * reproducible from its inputs.
+ *
+ * Dependencies:
+ * Enemy.java, VisualizedMap.java, FlowField.java
+ */
+public class EntitySystem {
+    // Kinds (index into KINDS)
+    public static final int ENEMY = 0;
+    private static final Entity[] KINDS = {new Enemy()};
+
+    // States
+    public static final int WANDERING = 0;
+    public static final int CHASING = 1;
+
+    // Enemies this many steps or fewer from the player chase it
+    public static final int CHASE_RADIUS = 24;
+
+    // Spatial hash buckets are 8x8 tiles
+    private static final int BUCKET_SHIFT = 3;
+    public static final int BUCKET_SIZE = 1 << BUCKET_SHIFT;
+
+    // Struct of arrays, valid for [0, count)
+    int[] kind, x, y, state, timer;
+    private int count = 0;
+
+    // Spatial hash: bucketHead[b] is the first entity in bucket b, next[i] the one after i
+    private final int bucketsX, bucketsY;
+    private final int[] bucketHead;
+    private int[] next;
+
+    // Shared by every chasing entity, rebuilt only when the player moves
+    FlowField flow;
+
+    private long random;
+    private int version = 0;
+
+    public EntitySystem(int mapWidth, int mapHeight, long seed){
+        bucketsX = (mapWidth + BUCKET_SIZE - 1) >> BUCKET_SHIFT;
+        bucketsY = (mapHeight + BUCKET_SIZE - 1) >> BUCKET_SHIFT;
+        bucketHead = new int[bucketsX * bucketsY];
+        Arrays.fill(bucketHead, -1);
+        random = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+        allocate(64);
+    }
+
+    public int getCount(){ return count; }
+
+    // Changes whenever an entity appears or moves
+    public int getVersion(){ return version; }
+
+    public FlowField getFlowField(){ return flow; }
+
+    public int getX(int id){ return x[id]; }
+    public int getY(int id){ return y[id]; }
+
+    public int spawn(int entityKind, int spawnX, int spawnY){
+        if(count == x.length) allocate(count * 2);
+        int id = count++;
+        kind[id] = entityKind;
+        x[id] = spawnX;
+        y[id] = spawnY;
+        state[id] = WANDERING;
+        timer[id] = id & 3; // stagger, so entities on a timer don't all act on the same tick
+        insert(id);
+        version++;
+        return id;
+    }
+
+    public void moveTo(int id, int newX, int newY){
+        x[id] = newX;
+        y[id] = newY;
+        version++;
+    }
+
+    /**
+     * Brings the flow field up to date, advances every entity by one tick,
+     * then rebuilds the spatial hash and hurts the player if an entity is
+     * on the player's tile.
+     */
+    public void update(VisualizedMap map){
+        if(flow == null) flow = new FlowField(map, CHASE_RADIUS);
+        flow.update(map);
+
+        for(int id = 0; id < count; id++){
+            KINDS[kind[id]].update(this, id, map);
+        }
+        rebuildBuckets();
+
+        if(entityAt(map.icon_x, map.icon_y) >= 0){
+            map.player.setHP(map.player.getHP() - 1);
+        }
+    }
+
+    // Some entity on the tile, or -1
+    public int entityAt(int tileX, int tileY){
+        if(tileX < 0 || tileY < 0) return -1;
+        int bx = tileX >> BUCKET_SHIFT;
+        int by = tileY >> BUCKET_SHIFT;
+        if(bx >= bucketsX || by >= bucketsY) return -1;
+
+        for(int id = bucketHead[by * bucketsX + bx]; id >= 0; id = next[id]){
+            if(x[id] == tileX && y[id] == tileY) return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Draws the entities inside the viewport over its glyphs (width x height,
+     * row by row, top-left at (left, top)). The player stays on top.
+     */
+    public void overlay(int[] glyphs, int left, int top, int width, int height){
+        int bx0 = Math.max(0, left >> BUCKET_SHIFT);
+        int by0 = Math.max(0, top >> BUCKET_SHIFT);
+        int bx1 = Math.min(bucketsX - 1, (left + width - 1) >> BUCKET_SHIFT);
+        int by1 = Math.min(bucketsY - 1, (top + height - 1) >> BUCKET_SHIFT);
+
+        for(int by = by0; by <= by1; by++){
+            for(int bx = bx0; bx <= bx1; bx++){
+                for(int id = bucketHead[by * bucketsX + bx]; id >= 0; id = next[id]){
+                    int col = x[id] - left;
+                    int row = y[id] - top;
+                    if(col < 0 || col >= width || row < 0 || row >= height) continue;
+
+                    int i = row * width + col;
+                    if(glyphs[i] != VisualizedMap.GLYPH_PLAYER && glyphs[i] != VisualizedMap.GLYPH_PLAYER_INVINCIBLE){
+                        glyphs[i] = VisualizedMap.GLYPH_ENEMY;
+                    }
+                }
+            }
+        }
+    }
+
+    // Uniform in [0, bound), xorshift64*
+    int nextRandom(int bound){
+        random ^= random >>> 12;
+        random ^= random << 25;
+        random ^= random >>> 27;
+        return (int) (((random * 0x2545F4914F6CDD1DL) >>> 33) * bound >>> 31);
+    }
+
+    private void rebuildBuckets(){
+        Arrays.fill(bucketHead, -1);
+        for(int id = 0; id < count; id++){
+            insert(id);
+        }
+    }
+
+    private void insert(int id){
+        int bucket = (y[id] >> BUCKET_SHIFT) * bucketsX + (x[id] >> BUCKET_SHIFT);
+        next[id] = bucketHead[bucket];
+        bucketHead[bucket] = id;
+    }
+
+    private void allocate(int capacity){
+        kind = kind == null ? new int[capacity] : Arrays.copyOf(kind, capacity);
+        x = x == null ? new int[capacity] : Arrays.copyOf(x, capacity);
+        y = y == null ? new int[capacity] : Arrays.copyOf(y, capacity);
+        state = state == null ? new int[capacity] : Arrays.copyOf(state, capacity);
+        timer = timer == null ? new int[capacity] : Arrays.copyOf(timer, capacity);
+        next = next == null ? new int[capacity] : Arrays.copyOf(next, capacity);
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.Map;
+
+/**
+ * Shared breadth-first flow field toward the player.
+ *
+ * One BFS from the player's tile over every walkable tile, where the two
+ * tiles of a portal pair are also neighbours, records for each tile reached
+ * the next tile on a shortest path back to the player. Any number of
+ * enemies can then chase the player with one array lookup each.
+ *
+ * The field only reaches maxDistance steps; enemies further away are out
+ * of range. It is recomputed only when the player has moved.
+ *
+ * Dependencies:
+ * GridSearch.java, VisualizedMap.java, Portal.java
+ */
+public class FlowField {
+    private final GridSearch search = new GridSearch();
+    private final int width, height;
+    private final int maxDistance;
+
+    // toward[cell] is the next cell toward the player, for cells the search reached
+    private final int[] toward;
+
+    // Portal pairs as packed cells; a map has at most ten
+    private final int[] portalA, portalB;
+
+    private int sourceX = -1, sourceY = -1;
+    private int recomputations = 0;
+
+    public FlowField(VisualizedMap map, int maxDistance){
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.maxDistance = maxDistance;
+        this.toward = new int[width * height];
+
+        // Each pair appears in both directions; keep one
+        Map<Portal, Portal> pairs = map.getPairedPortals();
+        portalA = new int[pairs.size() / 2];
+        portalB = new int[pairs.size() / 2];
+        int n = 0;
+        for(Map.Entry<Portal, Portal> pair : pairs.entrySet()){
+            int a = pack(pair.getKey().getX(), pair.getKey().getY());
+            int b = pack(pair.getValue().getX(), pair.getValue().getY());
+            if(a < b && n < portalA.length){
+                portalA[n] = a;
+                portalB[n] = b;
+                n++;
+            }
+        }
+    }
+
+    public int pack(int x, int y){ return y * width + x; }
+    public int x(int cell){ return cell % width; }
+    public int y(int cell){ return cell / width; }
+
+    // Number of times the field has been rebuilt, for diagnostics
+    public int getRecomputations(){ return recomputations; }
+
+    /**
+     * Rebuilds the field if the player is not on the tile it was built from.
+     */
+    public void update(VisualizedMap map){
+        if(map.icon_x == sourceX && map.icon_y == sourceY) return;
+        sourceX = map.icon_x;
+        sourceY = map.icon_y;
+        recomputations++;
+
+        char[][] tiles = map.map;
+        int source = pack(sourceX, sourceY);
+        search.begin(width, height);
+        search.visit(source, 0);
+        toward[source] = source;
+
+        while(search.hasNext()){
+            int cell = search.next();
+            int dist = search.distance(cell);
+            if(dist >= maxDistance) continue;
+
+            int cx = x(cell);
+            int cy = y(cell);
+            for(int dir = 0; dir < GridSearch.DX.length; dir++){
+                int nx = cx + GridSearch.DX[dir];
+                int ny = cy + GridSearch.DY[dir];
+                // Same bounds as VisualizedMap.validToMove
+                if(nx < 1 || nx >= width - 1 || ny < 1 || ny >= height - 1 || tiles[ny][nx] == '#') continue;
+
+                int neighbour = pack(nx, ny);
+                if(search.visit(neighbour, dist + 1)) toward[neighbour] = cell;
+            }
+
+            // Not keyed on the tile char: the player's tile reads 'x' even on a portal
+            int other = portalPartner(cell);
+            if(other >= 0 && search.visit(other, dist + 1)) toward[other] = cell;
+        }
+    }
+
+    /**
+     * Next cell (packed) on a shortest path from (x, y) to the player, or
+     * -1 if the player is out of range or (x, y) is the player's tile.
+     */
+    public int nextStep(int x, int y){
+        int cell = pack(x, y);
+        if(!search.isVisited(cell) || toward[cell] == cell) return -1;
+        return toward[cell];
+    }
+
+    // Steps from (x, y) to the player, or -1 if out of range
+    public int distance(int x, int y){
+        return search.distance(pack(x, y));
+    }
+
+    private int portalPartner(int cell){
+        for(int i = 0; i < portalA.length; i++){
+            if(portalA[i] == cell) return portalB[i];
+            if(portalB[i] == cell) return portalA[i];
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reusable byte buffer that a frame is assembled in before it is written.
+ *
+ * Everything the renderer emits is either a pre-encoded byte sequence or a
+ * decimal number, so once the buffer has grown to the largest frame seen,
+ * building and writing a frame allocates nothing.
+ */
+public class FrameBuffer {
+    private byte[] bytes;
+    private int size = 0;
+
+    // Scratch space for appendInt, long enough for Integer.MIN_VALUE
+    private final byte[] digits = new byte[11];
+
+    public FrameBuffer(){
+        this(8192);
+    }
+
+    public FrameBuffer(int capacity){
+        bytes = new byte[capacity];
+    }
+
+    // Encodes a constant once, for use with append
+    public static byte[] ascii(String s){
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public void clear(){
+        size = 0;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public FrameBuffer append(byte[] b){
+        ensureCapacity(size + b.length);
+        System.arraycopy(b, 0, bytes, size, b.length);
+        size += b.length;
+        return this;
+    }
+
+    // ASCII characters only
+    public FrameBuffer appendChar(char c){
+        ensureCapacity(size + 1);
+        bytes[size++] = (byte) c;
+        return this;
+    }
+
+    public FrameBuffer appendInt(int value){
+        long v = value; // so that -Integer.MIN_VALUE does not overflow
+        if(v < 0){
+            appendChar('-');
+            v = -v;
+        }
+        int n = 0;
+        do{
+            digits[n++] = (byte) ('0' + v % 10);
+            v /= 10;
+        }while(v > 0);
+
+        ensureCapacity(size + n);
+        while(n > 0){
+            bytes[size++] = digits[--n];
+        }
+        return this;
+    }
+
+    public void writeTo(OutputStream out) throws IOException{
+        out.write(bytes, 0, size);
+    }
+
+    private void ensureCapacity(int capacity){
+        if(capacity > bytes.length){
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+}
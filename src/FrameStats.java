@@ -0,0 +1,75 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Per-frame cost of drawing the game: how long a frame took to build,
+ * how long writing it to stdout took, and how many bytes it was. Tick
+ * times (simulation only, so the two can be compared), jitter and late or
+ * dropped ticks come from the GameClock.
+ *
+ * Recording and the overlay line only touch preallocated histograms and
+ * the frame buffer, so neither allocates while the game runs. The full
+ * report is formatted once, when it is dumped.
+ *
+ * Dependencies:
+ * Histogram.java, GameClock.java, FrameBuffer.java
+ */
+public class FrameStats {
+    private static final byte[] TICK_LABEL = FrameBuffer.ascii("\033[0m\033[2m  tick p99 ");
+    private static final byte[] BUILD_LABEL = FrameBuffer.ascii("us  build p99 ");
+    private static final byte[] WRITE_LABEL = FrameBuffer.ascii("us  write p99 ");
+    private static final byte[] BYTES_LABEL = FrameBuffer.ascii("us  frame p50 ");
+    private static final byte[] LATE_LABEL = FrameBuffer.ascii("B  late ");
+    private static final byte[] DROPPED_LABEL = FrameBuffer.ascii("  dropped ");
+
+    private final GameClock clock;
+    private final Histogram buildTimes = new Histogram();
+    private final Histogram writeTimes = new Histogram();
+    private final Histogram frameBytes = new Histogram();
+
+    public FrameStats(GameClock clock){
+        this.clock = clock;
+    }
+
+    public void recordFrame(long buildNanos, long writeNanos, int bytes){
+        buildTimes.record(buildNanos);
+        writeTimes.record(writeNanos);
+        frameBytes.record(bytes);
+    }
+
+    public Histogram getBuildTimes(){ return buildTimes; }
+    public Histogram getWriteTimes(){ return writeTimes; }
+    public Histogram getFrameBytes(){ return frameBytes; }
+
+    /**
+     * Appends the one-line overlay shown next to the HP header: p99 tick,
+     * build and write times in microseconds, median frame size, and late
+     * rounds and dropped ticks so far.
+     */
+    public void appendOverlay(FrameBuffer out){
+        out.append(TICK_LABEL).appendInt((int) (clock.getTickTimes().percentile(0.99) / 1000))
+           .append(BUILD_LABEL).appendInt((int) (buildTimes.percentile(0.99) / 1000))
+           .append(WRITE_LABEL).appendInt((int) (writeTimes.percentile(0.99) / 1000))
+           .append(BYTES_LABEL).appendInt((int) frameBytes.percentile(0.50))
+           .append(LATE_LABEL).appendInt((int) clock.getLateRounds())
+           .append(DROPPED_LABEL).appendInt((int) clock.getDroppedTicks());
+    }
+
+    public String report(){
+        return clock.report() + "\n"
+             + "Frame build: " + buildTimes.summary(1e3, "us") + "\n"
+             + "Frame write: " + writeTimes.summary(1e3, "us") + "\n"
+             + "Frame size: " + frameBytes.summary(1, "bytes");
+    }
+
+    // Writes the report to file, creating its directory if needed
+    public void dump(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if(dir != null) dir.mkdirs();
+        try(PrintWriter out = new PrintWriter(new FileWriter(file))){
+            out.println(report());
+        }
+    }
+}
@@ -3,17 +3,23 @@
  * 
  * Dependecies:
  * (JCL) IOException.java, KeyEventDispatcher.java, KeyboardFocusManager.java, KeyEvent.java
+ * KeyInput.java, InputSource.java, InputLog.java, GameClock.java, TerminalRenderer.java,
+ * FrameStats.java
+ * 
+ * A Game built with an InputSource instead runs headless (see simulate):
+ * no window, no terminal output and no frame pacing. With RECORD_SESSIONS
+ * on, played sessions are saved as an InputLog, which can be fed back in
+ * as such a source.
  * 
  * -- Notes on synchronization --
- * Any function that modifies any variable that requires synchronization needs to use the
- * synchronization() function, determined by the table below:
+ * The keyboard thread never shares a lock with the game loop. Key presses
+ * and releases go through KeyInput, a lock-free single-producer/single-consumer
+ * event ring, and the game loop drains it once per tick:
  * 
  * Variable    | Game Loop Thread | Keyboard Thread | Needs Sync?
  * ------------|-----------------|-----------------|------------
- * wPressed    | reads           | writes          | YES
- * aPressed    | reads           | writes          | YES
- * sPressed    | reads           | writes          | YES
- * dPressed    | reads           | writes          | YES
+ * input       | drains          | pushes          | NO (lock-free ring)
+ * keys        | reads/writes    | no access       | NO
  * running     | reads           | writes          | NO (volatile)
  * lastUpdate  | reads/writes    | no access       | NO
  * map         | reads/writes    | no access       | NO
@@ -21,8 +27,12 @@
  * 
  */
 
+import java.util.Date;
 import java.util.Scanner;
+import java.text.SimpleDateFormat;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 
 // To listen to keyboard presses
@@ -48,28 +58,62 @@ public class Game {
 
     // volatile imposed for thread safety (synchronization lock)
     private volatile boolean running = true;
-    private volatile boolean wPressed = false;
-    private volatile boolean aPressed = false;
-    private volatile boolean sPressed = false;
-    private volatile boolean dPressed = false;
-    private volatile boolean qPressed = false;
-    private volatile boolean ctrlPressed = false;
+
+    // Keyboard thread -> game loop, without locks; or a bot/replay when headless
+    private final InputSource input;
+    private int keys = 0;          // keys down during the current tick (KeyInput bits)
+    private int latchedKeys = 0;   // presses not yet acted on because of MOVE_DELAY
+
+    // Keys seen by each tick of a played session, saved to sessionLog at the end
+    private InputLog.Recorder recorder = null;
+    private File sessionLog = null;
 
     // Add buffer for double buffering (smoother rendering)
-    private StringBuilder screenBuffer = new StringBuilder();
+    private final FrameBuffer screenBuffer = new FrameBuffer();
+    // Map rows start below the HP header; null when headless
+    private final TerminalRenderer renderer;
     private static final String CLEAR_SCREEN = "\033[H\033[2J";
     private static final String CURSOR_HOME = "\033[H";
 
+    // Frames bypass System.out's encoder and go straight to the descriptor
+    private static final FileOutputStream STDOUT = new FileOutputStream(FileDescriptor.out);
+    private static final byte[] HP_LABEL = FrameBuffer.ascii(CURSOR_HOME + "\033[1mHP: ");
+    private static final byte[] DISTANCE_LABEL = FrameBuffer.ascii("\033[0m\033[1m  Distance: ");
+    private static final byte[] HEADER_END = FrameBuffer.ascii("\033[0m\033[K");
+
     // Rendering
-    private final double ONE_BILLION = 1000000000.00;
-    private final int MS_TO_NS_SCALAR = 1000000;
+    private final GameClock clock = new GameClock(DEFAULT_FPS); // shared with the player
     private long lastMoveTime = 0;
-    private static final long MOVE_DELAY = 75; // delay in ms
+    static final long MOVE_DELAY = 75; // delay in game-time ms, also paces enemies
+
+    // Frame timings; F3 shows them next to the HP header, refreshed every
+    // STATS_REFRESH game-time ms. They are printed on exit, and also dumped
+    // to statsFile if one was set
+    private final FrameStats stats = new FrameStats(clock);
+    private boolean showStats = false;
+    private static final long STATS_REFRESH = 250;
+    private File statsFile = null;
+
+    // State shown by the last frame, to skip frames where nothing changed
+    private boolean renderedShowStats = false;
+    private long renderedStatsTime = 0;
+    private int renderedVersion = -1;
+    private int renderedEntityVersion = -1;
+    private int renderedHP = -1;
+    private boolean renderedInvincible = false;
+
+    // Output totals, reported when the game ends
+    private long framesRendered = 0;
+    private long bytesRendered = 0;
+    private long uncoalescedBytesRendered = 0;
     
     // Settings Variables
     public static int DEFAULT_VIEWPORT_WIDTH = 50;
     public static int DEFAULT_VIEWPORT_HEIGHT = 20;
     public static int DEFAULT_FPS = 60;
+    public static int ENDLESS_HEIGHT = 30;
+    public static boolean RECORD_SESSIONS = false; // session logs and frame stats to sessions/
+    public static final int LIST_PAGE_SIZE = 20;
 
     // Font Design
     public static final String RESET = "\033[0m";
@@ -80,17 +124,49 @@ public class Game {
     public Game(){
         this.map = null;
         this.player = null;
+        this.input = null;
+        this.renderer = null;
     }
 
     // Constructor
     public Game(VisualizedMap map){
         this.map = map;
         this.player = map.player;
-        setupKeyboardListener();
+        player.setClock(clock);
+        KeyInput keyboard = new KeyInput();
+        this.recorder = new InputLog.Recorder(keyboard);
+        this.input = recorder;
+        this.renderer = new TerminalRenderer(2);
+        setupKeyboardListener(keyboard);
+    }
+
+    // Headless constructor: keys come from input, and no window is created
+    public Game(VisualizedMap map, InputSource input){
+        this(map, input, false);
+    }
+
+    // Keys come from input; with display, the game is still drawn (e.g. a replay)
+    public Game(VisualizedMap map, InputSource input, boolean display){
+        this.map = map;
+        this.player = map.player;
+        player.setClock(clock);
+        this.input = input;
+        this.renderer = display ? new TerminalRenderer(2) : null; // headless never touches the terminal
+    }
+
+    // Saves the keys of the session to file when the game ends, and the frame stats beside it
+    public void recordTo(File file){
+        this.sessionLog = file;
+        this.statsFile = new File(file.getPath().replace(InputLog.EXTENSION, ".stats.txt"));
+    }
+
+    // Writes the frame stats to file when the game ends
+    public void dumpStatsTo(File file){
+        this.statsFile = file;
     }
 
     // Setting up all the keyboard presses
-    private void setupKeyboardListener(){
+    private void setupKeyboardListener(KeyInput keyboard){
         // Create a window to maintain keyboard focus
         frame = new JFrame("Game Window");
         frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
@@ -114,78 +190,122 @@ public class Game {
         KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(new KeyEventDispatcher() {
             @Override
             public boolean dispatchKeyEvent(KeyEvent ke){
-                // Requiring synchronization since we are modifying key states that
-                // might be read by the game loop thread
-                synchronized (Game.class){
+                // Lock-free: the game loop picks the event up on its next tick
+                int key = keyBit(ke.getKeyCode());
+                if(key != 0){
                     switch(ke.getID()){
-                        case KeyEvent.KEY_PRESSED:
-                            switch(ke.getKeyCode()){
-                                case KeyEvent.VK_W: wPressed = true; break;
-                                case KeyEvent.VK_A: aPressed = true; break;
-                                case KeyEvent.VK_S: sPressed = true; break;
-                                case KeyEvent.VK_D: dPressed = true; break;
-                                case KeyEvent.VK_Q: qPressed = true; break;
-                                case KeyEvent.VK_CONTROL: ctrlPressed = true; map.ctrlPressed = true; break;
-                            }
-                            break;
-                        case KeyEvent.KEY_RELEASED:
-                            switch (ke.getKeyCode()) {
-                                case KeyEvent.VK_W: wPressed = false; break;
-                                case KeyEvent.VK_A: aPressed = false; break;
-                                case KeyEvent.VK_S: sPressed = false; break;
-                                case KeyEvent.VK_D: dPressed = false; break;
-                                case KeyEvent.VK_Q: qPressed = false; break;
-                                case KeyEvent.VK_CONTROL: ctrlPressed = false; map.ctrlPressed = false; break;
-                            }
-                            break;
+                        case KeyEvent.KEY_PRESSED: keyboard.press(key); break;
+                        case KeyEvent.KEY_RELEASED: keyboard.release(key); break;
                     }
-                    return false;
                 }
+                return false;
             }
         });
     }
 
+    private static int keyBit(int keyCode){
+        switch(keyCode){
+            case KeyEvent.VK_W: return KeyInput.UP;
+            case KeyEvent.VK_A: return KeyInput.LEFT;
+            case KeyEvent.VK_S: return KeyInput.DOWN;
+            case KeyEvent.VK_D: return KeyInput.RIGHT;
+            case KeyEvent.VK_Q: return KeyInput.QUIT;
+            case KeyEvent.VK_CONTROL: return KeyInput.CTRL;
+            case KeyEvent.VK_F3: return KeyInput.STATS;
+            default: return 0;
+        }
+    }
+
+    private boolean quitRequested(){
+        return (keys & (KeyInput.CTRL | KeyInput.QUIT)) == (KeyInput.CTRL | KeyInput.QUIT);
+    }
+
+    public boolean isOver(){
+        return quitRequested() || player.getHP() <= 0 || map.gameWon || input.isExhausted();
+    }
+
+    /**
+     * Headless game loop: runs ticks back to back, as fast as the CPU
+     * allows, until the game ends or maxTicks ticks have run. Nothing is
+     * drawn or printed. Game time still advances one tick at a time, so
+     * move delays and invincibility behave exactly as when playing.
+     * Returns the number of ticks run.
+     */
+    public long simulate(long maxTicks){
+        long ticks = 0;
+        while(running && ticks < maxTicks){
+            clock.advance();
+            updateGame();
+            ticks++;
+            if(isOver()) break;
+        }
+        return ticks;
+    }
+
     // Initializing the thread
     public void gameLoop(){
-        long before = System.currentTimeMillis();
-        final double NS_PER_UPDATE = ONE_BILLION / DEFAULT_FPS; // 60 frames per second
-        double delta = 0;
-
         // Initial render
         System.out.print(CLEAR_SCREEN);
+        renderer.invalidate();
         render();
+        clock.start();
 
         // Game continutes while running is true
         while(running){
-            long now = System.currentTimeMillis();
-            delta += (now - before) * MS_TO_NS_SCALAR / NS_PER_UPDATE;
-            before = now;
+            // Fixed timestep: simulate every tick that is due, then draw once
+            int due = clock.awaitTick();
+            if(due == 0){
+                Thread.currentThread().interrupt();
+                System.out.println();
+                break;
+            }
 
-            if (delta >= 1){
+            // Tick times cover the simulation only; render() records its own cost in stats
+            for(int i = 0; i < due && !isOver(); i++){
+                long tickStart = System.nanoTime();
+                clock.advance();
                 updateGame();
+                clock.recordTickTime(System.nanoTime() - tickStart);
+            }
+
+            // Only draw if something visible changed
+            if(isDirty()){
+                render();
             }
-            
-            render();
 
             // Check game end conditions
-            if(!running || (ctrlPressed && qPressed) || player.getHP() <= 0 || map.gameWon) {
+            if(!running || isOver()) {
                 break;  // Exit loop if any end condition is met
             }
+        }
+        
+        System.out.println();
+        if(framesRendered > 0){
+            System.out.printf("Rendered %d frames, %d bytes/frame (%d bytes/frame without colour runs)%n",
+                framesRendered, bytesRendered / framesRendered, uncoalescedBytesRendered / framesRendered);
+        }
+        System.out.println(stats.report());
 
-            // Small sleep to prevent CPU overuse
+        if(recorder != null && sessionLog != null){
             try{
-                Thread.sleep(1);
-            } catch (InterruptedException e){
-                Thread.currentThread().interrupt();
-                System.out.println();
-                break;
+                recorder.save(sessionLog, map, DEFAULT_FPS);
+                System.out.println("Session recorded to " + sessionLog.getPath());
+            }catch(IOException e){
+                System.err.println("Error saving session: " + e.getMessage());
             }
         }
-        
-        System.out.println();
 
-        frame.dispose();
-        if(ctrlPressed && qPressed){
+        if(statsFile != null){
+            try{
+                stats.dump(statsFile);
+                System.out.println("Frame stats written to " + statsFile.getPath());
+            }catch(IOException e){
+                System.err.println("Error writing frame stats: " + e.getMessage());
+            }
+        }
+
+        if(frame != null) frame.dispose();
+        if(quitRequested()){
 
             System.out.print("Succesfully quitted. Type 'Help' for more commands.\n");
 
@@ -214,6 +334,10 @@ public class Game {
             try{Thread.sleep(1000);}catch(InterruptedException e){};
 
             System.out.print("Try our other levels! Type 'Help' for more commands.\n");
+
+        }else if(input.isExhausted()){
+
+            System.out.print("Replay finished. Type 'Help' for more commands.\n");
         }
     }
 
@@ -223,52 +347,100 @@ public class Game {
      * map rendering
      */
     private void updateGame() {
-        // Requiring synchronization since we are reading the key states
-        // that may be modified by the keyboard listener thread
-        synchronized (Game.class) {
-            long currentTime = System.currentTimeMillis();
-            boolean moved = false;
-
-            // Check for movement only after delay
-            if (currentTime - lastMoveTime >= MOVE_DELAY) {
-                if (wPressed && map.validToMove(map.icon_x, map.icon_y - 1)) {
-                    map.up();
-                    moved = true;
-                }
-                if (aPressed && map.validToMove(map.icon_x - 1, map.icon_y)) {
-                    map.left();
-                    moved = true;
-                }
-                if (sPressed && map.validToMove(map.icon_x, map.icon_y + 1)) {
-                    map.down();
-                    moved = true;
-                }
-                if (dPressed && map.validToMove(map.icon_x + 1, map.icon_y)) {
-                    map.right();
-                    moved = true;
-                }
+        // Every key that was down at any point since the last tick
+        keys = input.poll();
+        map.ctrlPressed = (keys & KeyInput.CTRL) != 0;
+        latchedKeys |= input.pressed();
+        if((input.pressed() & KeyInput.STATS) != 0){
+            showStats = !showStats;
+        }
 
-                if (moved) {
-                    lastMoveTime = currentTime;
-                }
+        long currentTime = clock.millis();
+        boolean moved = false;
+
+        // Check for movement only after delay; taps made during the delay
+        // stay latched until then
+        if (currentTime - lastMoveTime >= MOVE_DELAY) {
+            int moveKeys = keys | latchedKeys;
+            latchedKeys = 0;
+
+            if ((moveKeys & KeyInput.UP) != 0 && map.validToMove(map.icon_x, map.icon_y - 1)) {
+                map.up();
+                moved = true;
+            }
+            if ((moveKeys & KeyInput.LEFT) != 0 && map.validToMove(map.icon_x - 1, map.icon_y)) {
+                map.left();
+                moved = true;
+            }
+            if ((moveKeys & KeyInput.DOWN) != 0 && map.validToMove(map.icon_x, map.icon_y + 1)) {
+                map.down();
+                moved = true;
+            }
+            if ((moveKeys & KeyInput.RIGHT) != 0 && map.validToMove(map.icon_x + 1, map.icon_y)) {
+                map.right();
+                moved = true;
+            }
+
+            if (moved) {
+                lastMoveTime = currentTime;
             }
         }
+
+        // Enemies move after the player, then hit the player if they share a tile
+        if (map.entities != null) {
+            map.entities.update(map);
+        }
+    }
+
+    // True if the map, HP, invincibility or the stats overlay changed since the
+    // last frame; a shown overlay is also stale once its refresh interval is up
+    private boolean isDirty(){
+        return showStats != renderedShowStats
+            || (showStats && clock.millis() - renderedStatsTime >= STATS_REFRESH)
+            || map.getVersion() != renderedVersion
+            || (map.entities != null && map.entities.getVersion() != renderedEntityVersion)
+            || player.getHP() != renderedHP
+            || player.isInvincible() != renderedInvincible;
     }
 
     private void render(){
+        long buildStart = System.nanoTime();
+        renderedShowStats = showStats;
+        renderedStatsTime = clock.millis();
+        renderedVersion = map.getVersion();
+        if(map.entities != null) renderedEntityVersion = map.entities.getVersion();
+        renderedHP = player.getHP();
+        renderedInvincible = player.isInvincible();
+
         // Clear screen using ANSI codes with octal
         // Resources: https://gist.github.com/fnky/458719343aabd01cfb17a3a4f7296797
 
         // Clear buffer
-        screenBuffer.setLength(0);
+        screenBuffer.clear();
+
+        // Build the frame in memory first; only changed map cells are redrawn
+        screenBuffer.append(HP_LABEL).appendInt(player.getHP()); // Cursor home instead of clearing screen
+        if(map.isStreaming()){
+            screenBuffer.append(DISTANCE_LABEL).appendInt(map.getWorldX());
+        }
+        if(showStats){
+            stats.appendOverlay(screenBuffer);
+        }
+        screenBuffer.append(HEADER_END);
+        renderer.render(map, screenBuffer);
 
-        // Build the entire screen in memory first
-        screenBuffer.append(CURSOR_HOME) // Move cursor to top instead of clearing screen
-                    .append(BOLD + "HP: ").append(player.getHP() + RESET + "\n")
-                    .append(map.toString());
+        framesRendered++;
+        bytesRendered += screenBuffer.size();
+        uncoalescedBytesRendered += screenBuffer.size() - renderer.getLastFrameBytes() + renderer.getLastUncoalescedBytes();
 
-        System.out.print(screenBuffer.toString());
-        // System.out.flush(); // flush any buffered input
+        long writeStart = System.nanoTime();
+        try{
+            System.out.flush(); // anything printed earlier must come first
+            screenBuffer.writeTo(STDOUT);
+        }catch(IOException e){
+            System.err.println("Error writing frame: " + e.getMessage());
+        }
+        stats.recordFrame(writeStart - buildStart, System.nanoTime() - writeStart, screenBuffer.size());
     }
 
     private void play(){
@@ -280,27 +452,10 @@ public class Game {
         });
         gameThread.start();
 
-        // Additional thread for background systems
-        Thread systemThread = new Thread(() -> {
-            while (running){
-                // Can handle things like:
-                // - Enemy AI updates
-                // - Other features
-                try {
-                    Thread.sleep(100); // Update every 100 ms
-                } catch (InterruptedException e){
-                    // catches interrupt()
-                    Thread.currentThread().interrupt(); // signals the thread to stop
-                    break; // exit the thread
-                }
-            }
-        });
-        systemThread.start();
-        
+        // Enemies are simulated inside the game loop's ticks (see updateGame),
+        // so they share its fixed timestep and need no thread of their own
         try{
             gameThread.join(); // Wait for game thread to end
-            systemThread.interrupt(); // Stop system thread abruptly
-            systemThread.join(); // Wait for system thread to end
         }catch(InterruptedException e){
             System.out.println("Game interrupted!\n");
         }
@@ -311,6 +466,7 @@ public class Game {
             "You are the 'x' icon.\n" + 
             "'+' denotes an empty space.\n" + 
             "'#' denotes a wall.\n" +
+            "'E' is an enemy; touching one costs a hit point.\n" +
             "Use WASD -- W (Move up), A (Move left), S (Move down), D (Move right) to move.\n" + 
             "Good luck!\n");
             System.out.print(map + "\n");
@@ -324,6 +480,10 @@ public class Game {
             System.out.println("\033[1;37mCommands:" + RESET);
             System.out.println("  Play <number>   - Start game with specified map");
             System.out.println("  Preview <number> - Show preview of specified map");
+            System.out.println("  List [page]     - List catalogued maps, " + LIST_PAGE_SIZE + " per page");
+            System.out.println("  Endless [seed]  - Play an endless, generated world");
+            System.out.println("  Replay <file>   - Watch a recorded session (saved in sessions/ with Settings > RECORD on)");
+            System.out.println("  Settings        - Change the viewport size or turn session recording on");
             System.out.println("  Help            - Display this help message");
             System.out.println("  Quit            - Exit the game");
             System.out.println("\n\033[1;37mGame Controls:" + RESET);
@@ -333,6 +493,7 @@ public class Game {
             System.out.println("  D - Move right");
             System.out.println("  CTRL - Hold for portal teleporting");
             System.out.println("  CTRL+Q - Quit game");
+            System.out.println("  F3 - Show or hide frame timing stats");
             System.out.println("\n\033[1;37mMap Tiles:" + RESET);
             System.out.println("  x - Player");
             System.out.println("  + - Empty space");
@@ -340,6 +501,8 @@ public class Game {
             System.out.println("  : - Goal");
             System.out.println("  * - Spike");
             System.out.println("  | - Portal");
+            System.out.println("  E - Enemy");
+            System.out.println("  S - Enemy spawn point (drawn as a green +)");
             System.out.println();
             System.out.println("Type '-h <map_tile>' for additional information.");
             System.out.println("Type 'back' to return to main menu.");
@@ -373,8 +536,11 @@ public class Game {
                         case '*':
                             System.out.println("'*' - Spike - The spikiest object in the world of printable characters. Don't mess with them, they're temperamental.");
                             break;
+                        case 'S':
+                            System.out.println("'S' - Enemy spawn point - Looks like any other empty space, only greener. Something crawls out of here when the map loads.");
+                            break;
                         default:
-                            System.out.println("Invalid input. Valid tiles are: 'x', '+', '#', ':', '|', and '*'.");
+                            System.out.println("Invalid input. Valid tiles are: 'x', '+', '#', ':', '|', '*', and 'S'.");
                     }
                     break;
                     
@@ -392,9 +558,10 @@ public class Game {
         boolean settingsRunning = true;
         
         while(settingsRunning){
-            System.out.print(String.format("\n\033[1mCurrent Viewport Dimensions (VIEWPORT):" + RESET + " %dx%d (Recommended to be around 50x20)\n" +"\033[1mCurrent FPS (FIXED):" + RESET + " %d\n",
-                                        DEFAULT_VIEWPORT_WIDTH, DEFAULT_VIEWPORT_HEIGHT, DEFAULT_FPS));
-            System.out.print("Type \033[38;5;196mVIEWPORT <width>x<height>" + RESET + " to change viewport settings or \033[38;5;196mback" + RESET + " to return.\n");
+            System.out.print(String.format("\n\033[1mCurrent Viewport Dimensions (VIEWPORT):" + RESET + " %dx%d (Recommended to be around 50x20)\n" +"\033[1mCurrent FPS (FIXED):" + RESET + " %d\n" +
+                                        "\033[1mRecord Sessions (RECORD):" + RESET + " %s (session logs and frame stats saved to sessions/)\n",
+                                        DEFAULT_VIEWPORT_WIDTH, DEFAULT_VIEWPORT_HEIGHT, DEFAULT_FPS, RECORD_SESSIONS ? "on" : "off"));
+            System.out.print("Type \033[38;5;196mVIEWPORT <width>x<height>" + RESET + " or \033[38;5;196mRECORD on|off" + RESET + " to change settings or \033[38;5;196mback" + RESET + " to return.\n");
             
             String[] parsed2 = scan.nextLine().split(" ");
             try{
@@ -411,19 +578,61 @@ public class Game {
                             System.out.print("Invalid input. Width and height must be greater than 0");
                         }
 
+                        break;
+                    case "record":
+                        String mode = parsed2[1].toLowerCase();
+                        if(mode.equals("on") || mode.equals("off")){
+                            RECORD_SESSIONS = mode.equals("on");
+                            System.out.print("Session recording turned " + mode + ".\n");
+                        }else{
+                            System.out.print("Invalid input. Use RECORD on or RECORD off.\n");
+                        }
                         break;
                     case "back":
                         settingsRunning = false;
                         break;
                     default:
-                        System.out.println("Invalid input. Use \033[38;5;196mVIEWPORT <width>x<height>" + RESET + " to change viewport settings or \033[38;5;196mback" + RESET + " to return.");
+                        System.out.println("Invalid input. Use \033[38;5;196mVIEWPORT <width>x<height>" + RESET + " or \033[38;5;196mRECORD on|off" + RESET + " to change settings or \033[38;5;196mback" + RESET + " to return.");
                 }
             }catch(ArrayIndexOutOfBoundsException e){
-                System.out.println("Invalid input. Use \033[38;5;196mVIEWPORT <width>x<height>" + RESET + " to change viewport settings or \033[38;5;196mback" + RESET + " to return.");
+                System.out.println("Invalid input. Use \033[38;5;196mVIEWPORT <width>x<height>" + RESET + " or \033[38;5;196mRECORD on|off" + RESET + " to change settings or \033[38;5;196mback" + RESET + " to return.");
             }
         }
     }
 
+    // Prefers an up-to-date binary copy of the map over its text source
+    private static File findMap(String mapPath, String number){
+        File text = new File(mapPath + "map" + number + ".txt");
+        File binary = new File(BinaryMapFile.binaryPathFor(text.getPath()));
+        return BinaryMapFile.isUsableFor(binary, text) ? binary : text;
+    }
+
+    // Looks a map up in the catalog, indexing it first if it was added by hand.
+    // An entry whose map file has since been deleted does not count as found.
+    private static MapCatalog.Entry findEntry(MapCatalog catalog, String mapPath, String number){
+        int n;
+        try{
+            n = Integer.parseInt(number);
+        }catch(NumberFormatException e){
+            return null;
+        }
+
+        File text = new File(mapPath + "map" + n + ".txt");
+        if(!findMap(mapPath, number).isFile()) return null;
+
+        MapCatalog.Entry entry = catalog.get(n);
+        if(entry == null){
+            entry = catalog.record(n, text);
+        }
+        return entry;
+    }
+
+    // A new file name for the log of a session starting now
+    private static File sessionFile(File sessionsDir){
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        return new File(sessionsDir, "session-" + stamp + InputLog.EXTENSION);
+    }
+
     public static void main(String args[]) throws IOException, InterruptedException{
         String currentDir = System.getProperty("user.dir");
         // Get parent directory
@@ -433,6 +642,12 @@ public class Game {
         File mapsDir = new File(currentDir + File.separator + "maps");
         String mapPath = mapsDir.getAbsolutePath() + File.separator;
         File map;
+        MapCatalog catalog = MapCatalog.open(mapsDir);
+        File sessionsDir = new File(currentDir + File.separator + "sessions");
+        // --record starts with session recording on, as Settings > RECORD on does
+        for(String arg : args){
+            if(arg.equals("--record")) RECORD_SESSIONS = true;
+        }
 
         Scanner scan = new Scanner(System.in);
 
@@ -446,6 +661,9 @@ public class Game {
             System.out.print("===============================");
             System.out.print("\n\033[1mPlay Map: \033[0mPlay <map_number>\n" +
                             "\033[1mMap Preview: \033[0mPreview <map_number>\n" +
+                            "\033[1mMap List: \033[0mList [page]\n" +
+                            "\033[1mEndless World: \033[0mEndless [seed]\n" +
+                            "\033[1mReplay Session: \033[0mReplay <file>\n" +
                             "\033[1mSettings: \033[0mSettings\n" + 
                             "\033[1mHelp Page: \033[0mHelp\n");
 
@@ -462,7 +680,14 @@ public class Game {
                         }
                         
                         System.out.print("\nComplete!\n");
-                    Game gamea = new Game(new VisualizedMap("C:\\Users\\bened\\OneDrive\\Documents\\University\\Projects\\Project1-Slitheria\\Slitheria\\maps\\map" + parsed[1] +".txt", DEFAULT_VIEWPORT_WIDTH, DEFAULT_VIEWPORT_HEIGHT));
+                    Game gamea;
+                    try{
+                        gamea = new Game(new VisualizedMap("C:\\Users\\bened\\OneDrive\\Documents\\University\\Projects\\Project1-Slitheria\\Slitheria\\maps\\map" + parsed[1] +".txt", DEFAULT_VIEWPORT_WIDTH, DEFAULT_VIEWPORT_HEIGHT));
+                    }catch(IOException e){
+                        System.out.println("Cannot load map " + parsed[1] + ": " + e.getMessage());
+                        continue;
+                    }
+                    if(RECORD_SESSIONS) gamea.recordTo(sessionFile(sessionsDir));
                     gamea.play();
                     break;
                 case "play":
@@ -471,8 +696,8 @@ public class Game {
                         continue;
                     }
 
-                    map = new File(mapPath + "map" + parsed[1] + ".txt");
-                    if(map.exists() && !map.isDirectory()){
+                    if(findEntry(catalog, mapPath, parsed[1]) != null){
+                        map = findMap(mapPath, parsed[1]);
                         System.out.print("Generating Map " + parsed[1] + "...\n\n");
                         for(int i = 0; i < 101; i++){
                             Thread.sleep(35);
@@ -489,7 +714,14 @@ public class Game {
                         System.out.print("\033[3B\n\033[1mComplete!\n\033[0m");
                         Thread.sleep(100);
 
-                        Game game = new Game(new VisualizedMap(map.getAbsolutePath(), DEFAULT_VIEWPORT_WIDTH, DEFAULT_VIEWPORT_HEIGHT));
+                        Game game;
+                        try{
+                            game = new Game(new VisualizedMap(map.getAbsolutePath(), DEFAULT_VIEWPORT_WIDTH, DEFAULT_VIEWPORT_HEIGHT));
+                        }catch(IOException e){
+                            System.out.println("Cannot load map " + parsed[1] + ": " + e.getMessage());
+                            continue;
+                        }
+                        if(RECORD_SESSIONS) game.recordTo(sessionFile(sessionsDir));
                         game.play();
                     }else{
                         System.out.println("Map " + parsed[1] + " not found!");
@@ -502,15 +734,81 @@ public class Game {
                         continue;
                     }
 
-                    map = new File(mapPath + "map" + parsed[1] + ".txt");
-                    if(map.exists() && !map.isDirectory()){
-                        VisualizedMap previewMap = new VisualizedMap(map.getAbsolutePath(), DEFAULT_VIEWPORT_WIDTH, DEFAULT_VIEWPORT_HEIGHT);
-                        System.out.print(previewMap + "\n");
+                    MapCatalog.Entry entry = findEntry(catalog, mapPath, parsed[1]);
+                    if(entry != null){
+                        map = findMap(mapPath, parsed[1]);
+                        System.out.println(entry);
+                        try{
+                            VisualizedMap previewMap = new VisualizedMap(map.getAbsolutePath(), DEFAULT_VIEWPORT_WIDTH, DEFAULT_VIEWPORT_HEIGHT);
+                            System.out.print(previewMap + "\n");
+                        }catch(IOException e){
+                            System.out.println("Cannot load map " + parsed[1] + ": " + e.getMessage());
+                        }
                     }else{
                         System.out.println("Map " + parsed[1] + " not found!");
                     }
                     break;
                 
+                case "list":
+                    int page;
+                    try{
+                        page = parsed.length > 1 ? Integer.parseInt(parsed[1]) : 1;
+                    }catch(NumberFormatException e){
+                        page = 0;
+                    }
+                    if(page < 1){
+                        System.out.print("Usage: List [page]\n");
+                        continue;
+                    }
+
+                    int pages = Math.max(1, (catalog.size() + LIST_PAGE_SIZE - 1) / LIST_PAGE_SIZE);
+                    System.out.println(catalog.size() + " maps (page " + page + " of " + pages + ")");
+                    for(MapCatalog.Entry listed : catalog.list((page - 1) * LIST_PAGE_SIZE, LIST_PAGE_SIZE)){
+                        System.out.println("  " + listed);
+                    }
+                    break;
+
+                case "endless":
+                    long seed;
+                    try{
+                        seed = parsed.length > 1 ? Long.parseLong(parsed[1]) : System.nanoTime();
+                    }catch(NumberFormatException e){
+                        System.out.print("Usage: Endless [seed]\n");
+                        continue;
+                    }
+
+                    System.out.print("Entering endless world (seed " + seed + ")...\n");
+                    Game endless = new Game(new VisualizedMap(seed, ENDLESS_HEIGHT, DEFAULT_VIEWPORT_WIDTH, DEFAULT_VIEWPORT_HEIGHT));
+                    if(RECORD_SESSIONS) endless.recordTo(sessionFile(sessionsDir));
+                    endless.play();
+                    break;
+
+                case "replay":
+                    if(parsed.length != 2){
+                        System.out.print("Usage: Replay <file>\n");
+                        continue;
+                    }
+
+                    File logFile = new File(parsed[1]);
+                    if(!logFile.isFile()) logFile = new File(sessionsDir, parsed[1]);
+                    InputLog log;
+                    Game replay;
+                    try{
+                        log = InputLog.read(logFile);
+                        replay = new Game(log.openMap(), log.replay(), true);
+                    }catch(IOException e){
+                        System.out.println("Cannot read session " + parsed[1] + ": " + e.getMessage());
+                        continue;
+                    }
+
+                    System.out.println("Replaying " + log + "...");
+                    String logName = logFile.getName();
+                    if(logName.endsWith(InputLog.EXTENSION)) logName = logName.substring(0, logName.length() - InputLog.EXTENSION.length());
+                    if(RECORD_SESSIONS) replay.dumpStatsTo(new File(sessionsDir, logName + ".replay.stats.txt"));
+                    replay.play();
+                    System.out.println(log.matches(replay.map) ? "Replay matched the recorded session." : "Replay diverged from the recorded session!");
+                    break;
+
                 case "settings":
                     displaySettings(scan);
                     break;
@@ -0,0 +1,107 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-timestep game clock.
+ *
+ * Game time only moves when a tick is simulated, so everything timed
+ * against it (movement delay, invincibility) behaves the same however the
+ * ticks are paced; replaying the same inputs gives the same game.
+ * Pacing uses System.nanoTime deadlines: the loop parks until shortly
+ * before the next tick is due and spins the rest of the way, so ticks do
+ * not inherit the OS timer's millisecond granularity.
+ *
+ * Also measures how long each tick took to simulate, how late it started
+ * (jitter), how often the loop fell a whole tick behind and how many ticks
+ * it had to drop to catch up.
+ *
+ * Dependencies:
+ * (JCL) LockSupport.java
+ * Histogram.java
+ */
+public class GameClock {
+    // Parking overshoots by tens of microseconds; spin through the last stretch
+    private static final long SPIN_NANOS = 100_000;
+
+    // After a stall, at most this many missed ticks are simulated
+    public static final int MAX_CATCH_UP_TICKS = 5;
+
+    private final long tickNanos;
+    private long tick = 0;
+
+    private long nextTickAt;
+    private final Histogram tickTimes = new Histogram();
+    private final Histogram jitter = new Histogram();
+    private long lateRounds = 0;   // rounds that had to simulate more than one tick
+    private long droppedTicks = 0; // ticks skipped because the loop was too far behind
+
+    public GameClock(int ticksPerSecond){
+        this.tickNanos = 1_000_000_000L / ticksPerSecond;
+    }
+
+    public long getTickNanos(){ return tickNanos; }
+
+    // Ticks simulated so far
+    public long getTick(){ return tick; }
+
+    // Game time in milliseconds
+    public long millis(){
+        return tick * tickNanos / 1_000_000;
+    }
+
+    // Moves game time forward by one tick
+    public void advance(){
+        tick++;
+    }
+
+    // Schedules the first tick one period from now
+    public void start(){
+        nextTickAt = System.nanoTime() + tickNanos;
+    }
+
+    /**
+     * Waits until the next tick is due and returns how many ticks should
+     * be simulated now: 1 normally, more if the caller fell behind (capped
+     * at MAX_CATCH_UP_TICKS, dropping the rest). Returns 0 if the thread
+     * was interrupted while waiting.
+     */
+    public int awaitTick(){
+        long remaining;
+        while((remaining = nextTickAt - System.nanoTime()) > 0){
+            if(remaining > SPIN_NANOS){
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+                if(Thread.currentThread().isInterrupted()) return 0;
+            }else{
+                Thread.onSpinWait();
+            }
+        }
+
+        long late = -remaining;
+        jitter.record(late);
+
+        int due = (int) Math.min(MAX_CATCH_UP_TICKS, 1 + late / tickNanos);
+        if(due > 1) lateRounds++;
+        if(late / tickNanos >= MAX_CATCH_UP_TICKS){
+            droppedTicks += 1 + late / tickNanos - due;
+            nextTickAt = System.nanoTime() + tickNanos; // too far behind, resynchronise
+        }else{
+            nextTickAt += due * tickNanos;
+        }
+        return due;
+    }
+
+    // Records how long one tick took to simulate; drawing is timed separately
+    public void recordTickTime(long nanos){
+        tickTimes.record(nanos);
+    }
+
+    public Histogram getTickTimes(){ return tickTimes; }
+    public Histogram getJitter(){ return jitter; }
+    public long getLateRounds(){ return lateRounds; }
+    public long getDroppedTicks(){ return droppedTicks; }
+
+    public String report(){
+        return "Tick time (simulation): " + tickTimes.summary(1e6, "ms") + "\n"
+             + "Tick jitter: " + jitter.summary(1e6, "ms") + "\n"
+             + "Late rounds: " + lateRounds + ", dropped ticks: " + droppedTicks;
+    }
+}
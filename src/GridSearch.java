@@ -0,0 +1,227 @@
+import java.util.Arrays;
+
+/**
+ * Reusable breadth-first and A* search over a rectangular grid.
+ *
+ * Cells are packed into a single int (y * width + x). The frontier is a
+ * ring buffer and visited cells are marked with the current epoch instead
+ * of being cleared, so starting a new search is O(1) and a search that
+ * fits in the existing buffers allocates nothing. A* keeps its open set in
+ * a binary heap and its closed set as a second epoch stamp, both reused
+ * the same way.
+ *
+ * Instances are not thread-safe; keep one per thread or per owner.
+ */
+public class GridSearch {
+    // Neighbour order: down, right, up, left
+    static final int[] DX = {0, 1, 0, -1};
+    static final int[] DY = {1, 0, -1, 0};
+
+    /**
+     * Decides which tiles a search may step onto.
+     */
+    public interface TileFilter {
+        boolean passable(char tile);
+    }
+
+    /**
+     * Cost of stepping onto a tile for A*, at least 1, or negative if the
+     * tile cannot be entered.
+     */
+    public interface TileCost {
+        int cost(char[][] map, int x, int y);
+    }
+
+    private int width, height;
+
+    // Ring buffer of packed cells
+    private int[] queue = new int[0];
+    private int head, size;
+
+    // stamp[cell] == epoch marks a cell visited in the current search
+    private int[] stamp = new int[0];
+    private int[] distance = new int[0];
+    private int epoch = 0;
+
+    // A*: open set as a min-heap of (f << 32 | cell), closed set and path links
+    private long[] open = new long[0];
+    private int openSize;
+    private int[] closed = new int[0];
+    private int[] parent = new int[0];
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    public int pack(int x, int y) { return y * width + x; }
+    public int x(int cell) { return cell % width; }
+    public int y(int cell) { return cell / width; }
+
+    /**
+     * Starts a new search on a width x height grid, growing the buffers if
+     * the grid is larger than any seen before.
+     */
+    public void begin(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int cells = width * height;
+
+        if (stamp.length < cells) {
+            queue = new int[cells];
+            stamp = new int[cells];
+            distance = new int[cells];
+            closed = new int[cells];
+            parent = new int[cells];
+            epoch = 0;
+        }
+        if (++epoch == Integer.MAX_VALUE) {
+            // Stamps would wrap around; start over from a clean slate
+            Arrays.fill(stamp, 0);
+            Arrays.fill(closed, 0);
+            epoch = 1;
+        }
+        head = 0;
+        size = 0;
+        openSize = 0;
+    }
+
+    /**
+     * Marks a cell visited at the given distance and enqueues it.
+     * Returns false if it was already visited in this search.
+     */
+    public boolean visit(int cell, int dist) {
+        if (stamp[cell] == epoch) return false;
+        stamp[cell] = epoch;
+        distance[cell] = dist;
+        queue[(head + size) % queue.length] = cell;
+        size++;
+        return true;
+    }
+
+    public boolean hasNext() {
+        return size > 0;
+    }
+
+    public int next() {
+        int cell = queue[head];
+        head = (head + 1) % queue.length;
+        size--;
+        return cell;
+    }
+
+    public boolean isVisited(int cell) {
+        return stamp[cell] == epoch;
+    }
+
+    // Distance recorded for a cell in this search, or -1 if it was not reached
+    public int distance(int cell) {
+        return stamp[cell] == epoch ? distance[cell] : -1;
+    }
+
+    /**
+     * Breadth-first search over the tiles of map from (startX, startY),
+     * stepping only onto passable tiles. Stops early once target is reached;
+     * pass -1 to build the distance field of the whole reachable area.
+     * Returns the distance to target, or -1 if it is unreachable.
+     */
+    public int bfs(char[][] map, int startX, int startY, int target, TileFilter filter) {
+        begin(map[0].length, map.length);
+        visit(pack(startX, startY), 0);
+
+        while (hasNext()) {
+            int cell = next();
+            if (cell == target) return distance[cell];
+
+            int cx = x(cell);
+            int cy = y(cell);
+            for (int dir = 0; dir < DX.length; dir++) {
+                int nx = cx + DX[dir];
+                int ny = cy + DY[dir];
+                if (nx >= 0 && nx < width && ny >= 0 && ny < height && filter.passable(map[ny][nx])) {
+                    visit(pack(nx, ny), distance[cell] + 1);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A* from (startX, startY) to (targetX, targetY) with a Manhattan
+     * heuristic. Returns the cost of the cheapest path, or -1 if there is
+     * none; afterwards distance(cell) is the cost to each settled cell and
+     * parent(cell) steps back along the path toward the start.
+     */
+    public int astar(char[][] map, int startX, int startY, int targetX, int targetY, TileCost cost) {
+        begin(map[0].length, map.length);
+        int start = pack(startX, startY);
+        int target = pack(targetX, targetY);
+        stamp[start] = epoch;
+        distance[start] = 0;
+        parent[start] = start;
+        push(Math.abs(targetX - startX) + Math.abs(targetY - startY), start);
+
+        while (openSize > 0) {
+            int cell = pop();
+            if (closed[cell] == epoch) continue;  // stale heap entry
+            closed[cell] = epoch;
+            if (cell == target) return distance[cell];
+
+            int cx = x(cell);
+            int cy = y(cell);
+            for (int dir = 0; dir < DX.length; dir++) {
+                int nx = cx + DX[dir];
+                int ny = cy + DY[dir];
+                if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+
+                int neighbour = pack(nx, ny);
+                if (closed[neighbour] == epoch) continue;
+                int step = cost.cost(map, nx, ny);
+                if (step < 0) continue;
+
+                int g = distance[cell] + step;
+                if (stamp[neighbour] != epoch || g < distance[neighbour]) {
+                    stamp[neighbour] = epoch;
+                    distance[neighbour] = g;
+                    parent[neighbour] = cell;
+                    push(g + Math.abs(targetX - nx) + Math.abs(targetY - ny), neighbour);
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Previous cell on the path A* found to this cell; the start is its own parent
+    public int parent(int cell) {
+        return parent[cell];
+    }
+
+    private void push(int f, int cell) {
+        if (openSize == open.length) {
+            open = Arrays.copyOf(open, Math.max(64, open.length * 2));
+        }
+        long entry = (long) f << 32 | cell;
+        int i = openSize++;
+        while (i > 0) {
+            int up = (i - 1) >> 1;
+            if (open[up] <= entry) break;
+            open[i] = open[up];
+            i = up;
+        }
+        open[i] = entry;
+    }
+
+    private int pop() {
+        int cell = (int) open[0];
+        long last = open[--openSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= openSize) break;
+            if (child + 1 < openSize && open[child + 1] < open[child]) child++;
+            if (open[child] >= last) break;
+            open[i] = open[child];
+            i = child;
+        }
+        open[i] = last;
+        return cell;
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+/**
+ * Fixed-size histogram of non-negative long values (durations in
+ * nanoseconds, byte counts, ...).
+ *
+ * Values are counted in log-linear buckets: 16 sub-buckets per power of
+ * two, so any percentile is within about 6% of the true value. Recording
+ * is O(1) and never allocates, which makes it safe to call every tick.
+ * Instances are not thread-safe; record from one thread.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[64 * SUB_BUCKETS];
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    public void record(long value){
+        if(value < 0) value = 0;
+        counts[bucket(value)]++;
+        count++;
+        sum += value;
+        if(value > max) max = value;
+    }
+
+    public void reset(){
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    public long getCount(){ return count; }
+    public long getMax(){ return max; }
+
+    public double getMean(){
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    // Value at or below which the given fraction (0 to 1) of samples fall
+    public long percentile(double fraction){
+        if(count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++){
+            seen += counts[i];
+            if(seen >= rank) return Math.min(max, bucketTop(i));
+        }
+        return max;
+    }
+
+    /**
+     * One-line summary with every value divided by scale, e.g.
+     * summary(1e6, "ms") for nanosecond samples.
+     */
+    public String summary(double scale, String unit){
+        return String.format("p50 %.2f, p90 %.2f, p99 %.2f, max %.2f %s (%d samples)",
+            percentile(0.50) / scale, percentile(0.90) / scale, percentile(0.99) / scale,
+            max / scale, unit, count);
+    }
+
+    // Values below 16 get a bucket each; above that, 16 per power of two
+    static int bucket(long value){
+        if(value < SUB_BUCKETS) return (int) value;
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Largest value that falls in the bucket
+    static long bucketTop(int index){
+        if(index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
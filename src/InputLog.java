@@ -0,0 +1,228 @@
+/**
+ * Compact binary log of the keys a game saw on each tick, written after a
+ * session so the session can be replayed exactly.
+ *
+ * Game time is counted in ticks (see GameClock), so the same keys on the
+ * same ticks always produce the same game, whatever speed it runs at.
+ * Only ticks whose keys differ from the tick before are stored.
+ *
+ * Layout (big-endian):
+ *   int    magic 'SLIN'
+ *   short  version
+ *   int    ticks per second
+ *   UTF    map file path, or "" for an endless world
+ *   long   world seed, int world height (endless worlds)
+ *   int    viewport width, int viewport height
+ *   long   ticks recorded
+ *   int    final world x, int final y, int final HP, boolean won
+ *   int    event bytes, then the events: per change, a varint count of
+ *          ticks since the previous change and a varint keys | pressed << 8
+ *
+ * The final state lets a replay check that it reproduced the session.
+ *
+ * Dependencies:
+ * (JCL) DataInputStream.java, DataOutputStream.java
+ * InputSource.java, KeyInput.java, VisualizedMap.java
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class InputLog {
+    public static final int MAGIC = 0x534C494E; // "SLIN"
+    public static final short VERSION = 1;
+    public static final String EXTENSION = ".slin";
+
+    public int ticksPerSecond;
+    public String mapPath;       // "" for an endless world
+    public long worldSeed;
+    public int worldHeight;
+    public int viewportWidth, viewportHeight;
+    public long ticks;
+    public int finalX, finalY, finalHP;
+    public boolean won;
+
+    private byte[] events;
+    private int eventLength;
+
+    public static InputLog read(File file) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            if(in.readInt() != MAGIC) throw new IOException(file + " is not an input log");
+            short version = in.readShort();
+            if(version != VERSION) throw new IOException("Unsupported input log version " + version);
+
+            InputLog log = new InputLog();
+            log.ticksPerSecond = in.readInt();
+            log.mapPath = in.readUTF();
+            log.worldSeed = in.readLong();
+            log.worldHeight = in.readInt();
+            log.viewportWidth = in.readInt();
+            log.viewportHeight = in.readInt();
+            log.ticks = in.readLong();
+            log.finalX = in.readInt();
+            log.finalY = in.readInt();
+            log.finalHP = in.readInt();
+            log.won = in.readBoolean();
+            log.eventLength = in.readInt();
+            log.events = new byte[log.eventLength];
+            in.readFully(log.events);
+            return log;
+        }
+    }
+
+    // A fresh copy of the map the session was played on
+    public VisualizedMap openMap() throws IOException {
+        if(mapPath.isEmpty()){
+            return new VisualizedMap(worldSeed, worldHeight, viewportWidth, viewportHeight);
+        }
+        return new VisualizedMap(mapPath, viewportWidth, viewportHeight);
+    }
+
+    // Input source that plays the recorded keys back from the first tick
+    public Replay replay(){
+        return new Replay(this);
+    }
+
+    // True if the map ended up where the recorded session did
+    public boolean matches(VisualizedMap map){
+        return map.getWorldX() == finalX && map.icon_y == finalY
+            && map.player.getHP() == finalHP && map.gameWon == won;
+    }
+
+    public String toString(){
+        return String.format("%s, %d ticks (%.1f s), %d bytes of input",
+            mapPath.isEmpty() ? "endless world " + worldSeed : new File(mapPath).getName(),
+            ticks, ticks / (double) ticksPerSecond, eventLength);
+    }
+
+    /**
+     * Wraps the live input source and records what it returns on every
+     * poll. Recording only appends to an in-memory buffer; nothing touches
+     * the disk until save.
+     */
+    public static class Recorder implements InputSource {
+        private final InputSource source;
+        private byte[] events = new byte[1024];
+        private int length = 0;
+        private long tick = 0;
+        private long lastChange = 0;
+        private int last = 0;  // keys | pressed << 8 on the previous tick
+        private int pressed = 0;
+
+        public Recorder(InputSource source){
+            this.source = source;
+        }
+
+        @Override
+        public int poll(){
+            int keys = source.poll();
+            pressed = source.pressed();
+
+            int state = keys | pressed << 8;
+            if(state != last){
+                writeVarint(tick - lastChange);
+                writeVarint(state);
+                lastChange = tick;
+                last = state;
+            }
+            tick++;
+            return keys;
+        }
+
+        @Override
+        public int pressed(){
+            return pressed;
+        }
+
+        public long getTicks(){
+            return tick;
+        }
+
+        // Writes the log, with the map the session was played on and how it ended
+        public void save(File file, VisualizedMap map, int ticksPerSecond) throws IOException {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if(dir != null) dir.mkdirs();
+
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeInt(ticksPerSecond);
+                out.writeUTF(map.isStreaming() ? "" : new File(map.getSourcePath()).getAbsolutePath());
+                out.writeLong(map.getWorldSeed());
+                out.writeInt(map.getHeight());
+                out.writeInt(map.VIEWPORT_WIDTH);
+                out.writeInt(map.VIEWPORT_HEIGHT);
+                out.writeLong(tick);
+                out.writeInt(map.getWorldX());
+                out.writeInt(map.icon_y);
+                out.writeInt(map.player.getHP());
+                out.writeBoolean(map.gameWon);
+                out.writeInt(length);
+                out.write(events, 0, length);
+            }
+        }
+
+        // 7 bits per byte, high bit set on all but the last
+        private void writeVarint(long value){
+            if(length + 10 > events.length) events = Arrays.copyOf(events, events.length * 2);
+            while((value & ~0x7FL) != 0){
+                events[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            events[length++] = (byte) value;
+        }
+    }
+
+    /**
+     * Plays a log back one tick per poll. Exhausted once every recorded
+     * tick has been played.
+     */
+    public static class Replay implements InputSource {
+        private final InputLog log;
+        private int position = 0;
+        private long tick = 0;
+        private long nextChange;
+        private int state = 0;
+
+        Replay(InputLog log){
+            this.log = log;
+            nextChange = position < log.eventLength ? readVarint() : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int poll(){
+            if(tick == nextChange){
+                state = (int) readVarint();
+                nextChange = position < log.eventLength ? tick + readVarint() : Long.MAX_VALUE;
+            }
+            tick++;
+            return state & 0xFF;
+        }
+
+        @Override
+        public int pressed(){
+            return state >>> 8;
+        }
+
+        @Override
+        public boolean isExhausted(){
+            return tick >= log.ticks;
+        }
+
+        private long readVarint(){
+            long value = 0;
+            for(int shift = 0; ; shift += 7){
+                byte b = log.events[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if(b >= 0) return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * Where the game loop gets its keys from, once per tick.
+ *
+ * KeyInput is the keyboard; headless runs plug in a bot or a recorded
+ * session instead, so the same updateGame logic runs with no window.
+ * Masks use the KeyInput key bits.
+ */
+public interface InputSource {
+    // Keys down at any point since the last poll
+    int poll();
+
+    // Keys that went down since the previous poll (subset of what poll() returned)
+    int pressed();
+
+    // True once the source has no more input to give, which ends the game
+    default boolean isExhausted(){
+        return false;
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free keyboard input shared by one producer (the AWT event thread)
+ * and one consumer (the game loop).
+ *
+ * Every press and release goes into a single-producer/single-consumer ring
+ * of key events, so a key tapped and released between two ticks is still
+ * seen by the next tick. An atomic bitmask mirrors which keys are down
+ * right now; the producer uses it to drop auto-repeat presses, and the
+ * consumer falls back to it if the ring ever overflows. Neither side ever
+ * blocks the other.
+ *
+ * Dependencies:
+ * (JCL) AtomicInteger.java, AtomicLong.java
+ * InputSource.java
+ */
+public class KeyInput implements InputSource {
+    // Key bits, as used in tick masks
+    public static final int UP = 1;
+    public static final int LEFT = 1 << 1;
+    public static final int DOWN = 1 << 2;
+    public static final int RIGHT = 1 << 3;
+    public static final int QUIT = 1 << 4;
+    public static final int CTRL = 1 << 5;
+    public static final int STATS = 1 << 6;
+
+    private static final int RELEASED = 1 << 31;
+    static final int CAPACITY = 256; // power of two
+    private static final int INDEX_MASK = CAPACITY - 1;
+
+    private final int[] events = new int[CAPACITY];
+    private final AtomicLong head = new AtomicLong(); // next event to read, owned by the consumer
+    private final AtomicLong tail = new AtomicLong(); // next slot to write, owned by the producer
+    private final AtomicInteger held = new AtomicInteger(); // keys down right now
+    private volatile boolean overflowed = false;
+
+    // Consumer state
+    private int down = 0;
+    private int pressed = 0;
+
+    // -- Producer side --
+
+    public void press(int key){
+        int keys = held.get();
+        if((keys & key) != 0) return; // auto-repeat
+        held.set(keys | key);
+        offer(key);
+    }
+
+    public void release(int key){
+        held.set(held.get() & ~key);
+        offer(key | RELEASED);
+    }
+
+    private void offer(int event){
+        long t = tail.get();
+        if(t - head.get() == CAPACITY){
+            overflowed = true; // the consumer will resync from held
+            return;
+        }
+        events[(int) t & INDEX_MASK] = event;
+        tail.lazySet(t + 1); // publishes the event
+    }
+
+    // -- Consumer side --
+
+    /**
+     * Drains the events since the last call and returns every key that was
+     * down at any point in between, including ones already released.
+     */
+    @Override
+    public int poll(){
+        pressed = 0;
+        long h = head.get();
+        long t = tail.get();
+        for(; h < t; h++){
+            int event = events[(int) h & INDEX_MASK];
+            int key = event & ~RELEASED;
+            if((event & RELEASED) != 0){
+                down &= ~key;
+            }else{
+                down |= key;
+                pressed |= key;
+            }
+        }
+        head.lazySet(h); // frees the slots
+
+        if(overflowed){
+            overflowed = false;
+            down = held.get();
+        }
+        return down | pressed;
+    }
+
+    // Keys that went down during the events drained by the last poll()
+    @Override
+    public int pressed(){
+        return pressed;
+    }
+
+    // Keys physically down right now, from any thread
+    public int held(){
+        return held.get();
+    }
+}
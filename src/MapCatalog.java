@@ -0,0 +1,276 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Persistent index of the maps in a maps directory, kept in catalog.txt.
+ *
+ * Each line describes one map:
+ *   number width height seed portals startX startY goalX goalY pathLength
+ * where seed is '-' for maps that were not generated from a seed and
+ * pathLength is -1 if the goal cannot be reached. New maps are appended as
+ * they are saved, so the directory is only scanned when the catalog file
+ * does not exist yet. Entries are held in an array indexed by map number,
+ * so lookups and the next free number are O(1).
+ *
+ * Dependencies:
+ * GridSearch.java
+ */
+public class MapCatalog {
+    public static final String FILE_NAME = "catalog.txt";
+    private static final String HEADER = "# number width height seed portals startX startY goalX goalY pathLength";
+
+    private static final Map<String, MapCatalog> OPEN = new HashMap<>();
+
+    public static class Entry {
+        public final int number, width, height, portals;
+        public final Long seed; // null if unknown
+        public final int startX, startY, goalX, goalY;
+        public final int pathLength;
+
+        Entry(int number, int width, int height, Long seed, int portals,
+              int startX, int startY, int goalX, int goalY, int pathLength) {
+            this.number = number;
+            this.width = width;
+            this.height = height;
+            this.seed = seed;
+            this.portals = portals;
+            this.startX = startX;
+            this.startY = startY;
+            this.goalX = goalX;
+            this.goalY = goalY;
+            this.pathLength = pathLength;
+        }
+
+        String toLine() {
+            return number + " " + width + " " + height + " " + (seed == null ? "-" : seed) + " " + portals + " "
+                    + startX + " " + startY + " " + goalX + " " + goalY + " " + pathLength;
+        }
+
+        static Entry fromLine(String line) {
+            String[] f = line.trim().split("\\s+");
+            return new Entry(Integer.parseInt(f[0]), Integer.parseInt(f[1]), Integer.parseInt(f[2]),
+                    f[3].equals("-") ? null : Long.parseLong(f[3]), Integer.parseInt(f[4]),
+                    Integer.parseInt(f[5]), Integer.parseInt(f[6]), Integer.parseInt(f[7]), Integer.parseInt(f[8]),
+                    Integer.parseInt(f[9]));
+        }
+
+        @Override
+        public String toString() {
+            return "Map " + number + ": " + height + "x" + width
+                    + (seed == null ? "" : ", seed " + seed)
+                    + ", " + portals + " portal pair" + (portals == 1 ? "" : "s")
+                    + ", start (" + startX + ", " + startY + "), goal (" + goalX + ", " + goalY + ")"
+                    + ", " + (pathLength < 0 ? "goal unreachable" : "shortest path " + pathLength);
+        }
+    }
+
+    private final File file;
+    // Path search buffers, reused for every map indexed; guarded by this catalog's lock
+    private final GridSearch search = new GridSearch();
+    private Entry[] byNumber = new Entry[64];
+    private int size = 0;
+    private int highest = 0;
+
+    private MapCatalog(File directory) {
+        this.file = new File(directory, FILE_NAME);
+    }
+
+    /**
+     * Returns the catalog of the given maps directory, loading it on first
+     * use. If there is no catalog file yet, the existing text maps are
+     * indexed once and the file is written.
+     */
+    public static synchronized MapCatalog open(File directory) {
+        String key = directory.getAbsolutePath();
+        MapCatalog catalog = OPEN.get(key);
+        if (catalog == null) {
+            catalog = new MapCatalog(directory);
+            if (catalog.file.exists()) {
+                catalog.load();
+            } else {
+                catalog.rebuild(directory);
+            }
+            OPEN.put(key, catalog);
+        }
+        return catalog;
+    }
+
+    public synchronized Entry get(int number) {
+        return number > 0 && number < byNumber.length ? byNumber[number] : null;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // One past the highest catalogued map number
+    public synchronized int nextNumber() {
+        return highest + 1;
+    }
+
+    /**
+     * Returns up to count entries in map number order, starting after the
+     * first skip catalogued maps.
+     */
+    public synchronized List<Entry> list(int skip, int count) {
+        List<Entry> page = new ArrayList<>();
+        for (int n = 1; n <= highest && page.size() < count; n++) {
+            if (byNumber[n] != null && skip-- <= 0) page.add(byNumber[n]);
+        }
+        return page;
+    }
+
+    /**
+     * Indexes a map from its text contents and appends it to the catalog file.
+     */
+    public synchronized Entry record(int number, String mapContent) {
+        Entry entry = describe(number, mapContent);
+        put(entry);
+        try (FileWriter writer = new FileWriter(file, true)) {
+            if (file.length() == 0) writer.write(HEADER + "\n");
+            writer.write(entry.toLine() + "\n");
+        } catch (IOException e) {
+            System.err.println("Error updating map catalog: " + e.getMessage());
+        }
+        return entry;
+    }
+
+    // Indexes a map file that was added to the directory by hand
+    public synchronized Entry record(int number, File mapFile) {
+        try {
+            return record(number, new String(Files.readAllBytes(mapFile.toPath())));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error indexing " + mapFile.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void put(Entry entry) {
+        if (entry.number >= byNumber.length) {
+            byNumber = Arrays.copyOf(byNumber, Math.max(byNumber.length * 2, entry.number + 1));
+        }
+        if (byNumber[entry.number] == null) size++;
+        byNumber[entry.number] = entry;
+        highest = Math.max(highest, entry.number);
+    }
+
+    private void load() {
+        try {
+            for (String line : Files.readAllLines(file.toPath())) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                try {
+                    put(Entry.fromLine(line));
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping bad catalog line: " + line);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading map catalog: " + e.getMessage());
+        }
+    }
+
+    // One-time scan of the directory, used when there is no catalog file
+    private void rebuild(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.matches("map\\d+\\.txt"));
+        if (files == null) return;
+
+        Arrays.sort(files, Comparator.comparingInt(MapCatalog::mapNumber));
+        for (File mapFile : files) {
+            record(mapNumber(mapFile), mapFile);
+        }
+    }
+
+    // map14.txt -> 14
+    private static int mapNumber(File mapFile) {
+        String name = mapFile.getName();
+        return Integer.parseInt(name.substring(3, name.length() - 4));
+    }
+
+    /**
+     * Reads the catalog fields out of a map in the text format. The shortest
+     * path is a BFS over every non-wall tile, where stepping onto a portal
+     * may also teleport to its pair, as Ctrl+move does in game.
+     */
+    private Entry describe(int number, String mapContent) {
+        String[] lines = mapContent.split("\r?\n");
+        int height = Integer.parseInt(lines[1].trim());
+        int width = Integer.parseInt(lines[2].trim());
+
+        Long seed = null;
+        int seedAt = lines[0].lastIndexOf("(seed ");
+        if (seedAt >= 0) {
+            try {
+                seed = Long.parseLong(lines[0].substring(seedAt + 6, lines[0].indexOf(')', seedAt)));
+            } catch (RuntimeException e) {
+                seed = null;
+            }
+        }
+
+        char[][] map = new char[height][];
+        int startX = -1, startY = -1, goalX = -1, goalY = -1;
+        int[] partner = new int[width * height];
+        Arrays.fill(partner, -1);
+        int[] pending = new int[10];
+        Arrays.fill(pending, -1);
+        int portals = 0;
+
+        for (int y = 0; y < height; y++) {
+            map[y] = lines[y + 3].toCharArray();
+            for (int x = 0; x < width; x++) {
+                char c = map[y][x];
+                if (c == 'x') {
+                    startX = x;
+                    startY = y;
+                } else if (c == ':') {
+                    goalX = x;
+                    goalY = y;
+                } else if (c >= '0' && c <= '9') {
+                    int cell = y * width + x;
+                    int other = pending[c - '0'];
+                    if (other < 0) {
+                        pending[c - '0'] = cell;
+                    } else {
+                        partner[cell] = other;
+                        partner[other] = cell;
+                        pending[c - '0'] = -1;
+                        portals++;
+                    }
+                }
+            }
+        }
+
+        int pathLength = -1;
+        if (startX >= 0 && goalX >= 0) {
+            pathLength = shortestPath(map, startX, startY, goalY * width + goalX, partner);
+        }
+        return new Entry(number, width, height, seed, portals, startX, startY, goalX, goalY, pathLength);
+    }
+
+    private int shortestPath(char[][] map, int startX, int startY, int goal, int[] partner) {
+        search.begin(map[0].length, map.length);
+        search.visit(search.pack(startX, startY), 0);
+
+        while (search.hasNext()) {
+            int cell = search.next();
+            int dist = search.distance(cell);
+            if (cell == goal) return dist;
+
+            int cx = search.x(cell);
+            int cy = search.y(cell);
+            for (int dir = 0; dir < GridSearch.DX.length; dir++) {
+                int nx = cx + GridSearch.DX[dir];
+                int ny = cy + GridSearch.DY[dir];
+                // Same bounds as VisualizedMap.validToMove
+                if (nx < 1 || nx >= map[0].length - 1 || ny < 1 || ny >= map.length - 1 || map[ny][nx] == '#') continue;
+
+                int next = search.pack(nx, ny);
+                search.visit(next, dist + 1);
+                if (partner[next] >= 0) search.visit(partner[next], dist + 1);
+            }
+        }
+        return -1;
+    }
+}
@@ -1,7 +1,11 @@
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.io.File;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
 
 public class MapGenerator {
     private static final char WALL = '#';
@@ -9,23 +13,15 @@ public class MapGenerator {
     private static final char SPIKE = '*';
     private static final char GOAL = ':';
     private static final char PLAYER = 'x';
-    
-    static class Cell {
-        Set<Character> possibilities;
-        char value;
-        boolean collapsed;
-        
-        Cell() {
-            // Initialize with all possible values
-            possibilities = new HashSet<>(Arrays.asList(WALL, EMPTY, SPIKE));
-            collapsed = false;
-        }
-        
-        int entropy() {
-            return collapsed ? 0 : possibilities.size();
-        }
-    }
+    private static final char SPAWN = 'S';
+
+    // Default dimension bounds
+    private static final int MIN_SIZE = 75;
+    private static final int MAX_SIZE = 100;
 
+    // Next candidate map file number, seeded from the map catalog
+    private static AtomicInteger nextMapNumber = null;
+    
     static class Position {
         int x, y;
         Position(int x, int y) {
@@ -61,488 +57,483 @@ public class MapGenerator {
         VALID_NEIGHBORS.put(SPIKE, spikeNeighbors);
     }
 
-    private static void collapse(Cell[][] grid, int x, int y, char value) {
-        Cell cell = grid[y][x];
-        cell.possibilities.clear();
-        cell.possibilities.add(value);
-        cell.value = value;
-        cell.collapsed = true;
-    }
-
-    private static void propagateConstraints(Cell[][] grid, Position pos) {
-        Queue<Position> queue = new LinkedList<>();
-        queue.add(pos);
-        
-        while (!queue.isEmpty()) {
-            Position current = queue.poll();
-            Cell currentCell = grid[current.y][current.x];
-            
-            // Check all neighbors
-            int[][] directions = {{0,1}, {1,0}, {0,-1}, {-1,0}};
-            String[] dirNames = {"down", "right", "up", "left"};
-            
-            for (int i = 0; i < directions.length; i++) {
-                int nx = current.x + directions[i][0];
-                int ny = current.y + directions[i][1];
-                
-                if (nx >= 0 && nx < grid[0].length && ny >= 0 && ny < grid.length) {
-                    Cell neighbor = grid[ny][nx];
-                    int originalSize = neighbor.possibilities.size();
-                    
-                    // Update neighbor's possibilities based on current cell's value
-                    if (currentCell.collapsed) {
-                        Set<Character> validNeighbors = VALID_NEIGHBORS.get(currentCell.value)
-                                                                     .get(dirNames[i]);
-                        neighbor.possibilities.retainAll(validNeighbors);
-                        
-                        // If possibilities changed, add to queue
-                        if (!neighbor.collapsed && neighbor.possibilities.size() != originalSize) {
-                            queue.add(new Position(nx, ny));
-                            
-                            // If only one possibility remains, collapse it
-                            if (neighbor.possibilities.size() == 1) {
-                                collapse(grid, nx, ny, neighbor.possibilities.iterator().next());
-                            }
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    private static Position findMinEntropyPosition(Cell[][] grid, Random rand) {
-        List<Position> minPositions = new ArrayList<>();
-        int minEntropy = Integer.MAX_VALUE;
-        
-        for (int y = 0; y < grid.length; y++) {
-            for (int x = 0; x < grid[0].length; x++) {
-                Cell cell = grid[y][x];
-                if (!cell.collapsed) {
-                    int entropy = cell.entropy();
-                    if (entropy > 0) {
-                        if (entropy < minEntropy) {
-                            minEntropy = entropy;
-                            minPositions.clear();
-                            minPositions.add(new Position(x, y));
-                        } else if (entropy == minEntropy) {
-                            minPositions.add(new Position(x, y));
-                        }
-                    }
-                }
-            }
-        }
-        
-        return minPositions.isEmpty() ? null : minPositions.get(rand.nextInt(minPositions.size()));
-    }
-
-    private static boolean isFullyCollapsed(Cell[][] grid) {
-        for (Cell[] row : grid) {
-            for (Cell cell : row) {
-                if (!cell.collapsed) return false;
-            }
-        }
-        return true;
-    }
-
-    private static void resetGrid(Cell[][] grid) {
-        for (int y = 1; y < grid.length - 1; y++) {
-            for (int x = 1; x < grid[0].length - 1; x++) {
-                grid[y][x] = new Cell();
-            }
-        }
-    }
-
+    // Tile set and bitmask adjacency rules used by the WFC solver
+    private static final char[] TILES = {WALL, EMPTY, SPIKE};
+    private static final int[][] SUPPORT = WaveFunctionCollapse.compileRules(TILES, VALID_NEIGHBORS);
+
+    // Spike clusters larger than this are trimmed, removing each excess
+    // spike with the given probability
+    private static final int SPIKE_MAX_CLUSTER_SIZE = 0;
+    private static final double SPIKE_REDUCTION_PROBABILITY = 1.0;
+
+    // By default one enemy spawn point per this many tiles; never this close to the player
+    public static final int DEFAULT_SPAWN_AREA = 2000;
+    private static final int SPAWN_MIN_DISTANCE = 12;
+
+    // Portal candidates kept for pairing; beyond this they are reservoir sampled
+    private static final int PORTAL_POOL_SIZE = 1 << 16;
+
+    // Maps with a side longer than this are solved in tiles
+    private static final int TILED_THRESHOLD = 256;
+
+    // Search buffers are reused across maps; one set per generating thread
+    private static final ThreadLocal<GridSearch> SEARCH = ThreadLocal.withInitial(GridSearch::new);
+    private static final GridSearch.TileFilter NOT_WALL = tile -> tile != WALL;
+
+    // Removing one wall is worth it to save more than this many steps of detour
+    private static final int WALL_CLEAR_COST = 16;
+    static final GridSearch.TileCost CLEAR_COST = (map, x, y) -> {
+        if (x == 0 || y == 0 || y == map.length - 1 || x == map[0].length - 1) return -1;
+        return map[y][x] == WALL ? WALL_CLEAR_COST : 1;
+    };
+
+    /**
+     * Places the player on the open space with the most clearance, then the
+     * goal on the open space farthest from it by walking distance, counting
+     * spikes as floor.
+     * Clearance comes from a summed-area table and distances from a single
+     * BFS, so placement is linear in the map size.
+     */
     private static void placePlayerAndGoal(char[][] map) {
-        List<Position> openSpaces = findOpenSpaces(map);
-        if (openSpaces.isEmpty()) return;
+        int height = map.length;
+        int width = map[0].length;
+        int[] emptyCounts = summedEmptyCounts(map);
 
-        // Find a position with good clearance for player
+        // Find a position with good clearance for player (first one wins ties)
         Position playerPos = null;
         int bestClearance = 0;
-        
-        for (Position pos : openSpaces) {
-            int clearance = calculateClearance(map, pos);
-            if (clearance > bestClearance) {
-                bestClearance = clearance;
-                playerPos = pos;
+
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                if (!isOpenSpace(map, emptyCounts, x, y)) continue;
+                int clearance = calculateClearance(emptyCounts, width, height, x, y);
+                if (clearance > bestClearance) {
+                    bestClearance = clearance;
+                    playerPos = new Position(x, y);
+                }
             }
         }
 
         if (playerPos == null) return;
         map[playerPos.y][playerPos.x] = PLAYER;
-        openSpaces.remove(playerPos);
 
-        // Find furthest position with good path for goal
+        // Find furthest reachable position for goal. Spikes are walked through,
+        // since clearSpikes trims them afterwards. If the player is walled in,
+        // take the first unreachable one and let clearObstructivePaths connect it.
+        GridSearch search = SEARCH.get();
+        search.bfs(map, playerPos.x, playerPos.y, -1, NOT_WALL);
         Position goalPos = null;
+        Position unreachablePos = null;
         int maxPathDistance = 0;
 
-        for (Position pos : openSpaces) {
-            if (calculateClearance(map, pos) >= 2) {  // Ensure some clearance for goal
-                int distance = calculatePathDistance(map, playerPos, pos);
-                if (distance > maxPathDistance) {
-                    maxPathDistance = distance;
-                    goalPos = pos;
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                if ((x == playerPos.x && y == playerPos.y) || !isOpenSpace(map, emptyCounts, x, y)) continue;
+
+                // The player's own tile no longer counts as empty clearance
+                int clearance = calculateClearance(emptyCounts, width, height, x, y);
+                if (Math.abs(x - playerPos.x) <= 2 && Math.abs(y - playerPos.y) <= 2) clearance--;
+                if (clearance < 2) continue;  // Ensure some clearance for goal
+
+                int d = search.distance(search.pack(x, y));
+                if (d < 0) {
+                    if (unreachablePos == null) unreachablePos = new Position(x, y);
+                } else if (d > maxPathDistance) {
+                    maxPathDistance = d;
+                    goalPos = new Position(x, y);
                 }
             }
         }
 
+        if (goalPos == null) goalPos = unreachablePos;
         if (goalPos != null) {
             map[goalPos.y][goalPos.x] = GOAL;
             clearObstructivePaths(map, playerPos, goalPos);
         }
     }
 
-    private static int calculateClearance(char[][] map, Position pos) {
-        int clearance = 0;
-        for (int dy = -2; dy <= 2; dy++) {
-            for (int dx = -2; dx <= 2; dx++) {
-                int ny = pos.y + dy;
-                int nx = pos.x + dx;
-                if (ny >= 0 && ny < map.length && nx >= 0 && nx < map[0].length) {
-                    if (map[ny][nx] == EMPTY) clearance++;
-                }
-            }
-        }
-        return clearance;
-    }
+    /**
+     * Summed-area table of EMPTY tiles: entry (y + 1) * (width + 1) + (x + 1)
+     * holds the count over rows 0..y and columns 0..x.
+     */
+    private static int[] summedEmptyCounts(char[][] map) {
+        int height = map.length;
+        int width = map[0].length;
+        int stride = width + 1;
+        int[] sums = new int[(height + 1) * stride];
 
-    private static void clearObstructivePaths(char[][] map, Position start, Position end) {
-        // Create a distance map using BFS
-        int[][] distances = new int[map.length][map[0].length];
-        for (int[] row : distances) Arrays.fill(row, Integer.MAX_VALUE);
-        
-        Queue<Position> queue = new LinkedList<>();
-        queue.add(start);
-        distances[start.y][start.x] = 0;
-        
-        int[][] dirs = {{0,1}, {1,0}, {0,-1}, {-1,0}};
-        boolean[][] visited = new boolean[map.length][map[0].length];
-        
-        // Find all reachable positions
-        while (!queue.isEmpty()) {
-            Position current = queue.poll();
-            if (visited[current.y][current.x]) continue;
-            visited[current.y][current.x] = true;
-            
-            for (int[] dir : dirs) {
-                int nx = current.x + dir[0];
-                int ny = current.y + dir[1];
-                
-                if (nx >= 0 && nx < map[0].length && ny >= 0 && ny < map.length) {
-                    if (map[ny][nx] != WALL && !visited[ny][nx]) {
-                        distances[ny][nx] = distances[current.y][current.x] + 1;
-                        queue.add(new Position(nx, ny));
-                    }
-                }
+        for (int y = 0; y < height; y++) {
+            int rowSum = 0;
+            for (int x = 0; x < width; x++) {
+                if (map[y][x] == EMPTY) rowSum++;
+                sums[(y + 1) * stride + x + 1] = sums[y * stride + x + 1] + rowSum;
             }
         }
-        
-        // If end is not reachable or path is too convoluted, clear some walls
-        if (distances[end.y][end.x] == Integer.MAX_VALUE || 
-            distances[end.y][end.x] > Math.abs(end.x - start.x) + Math.abs(end.y - start.y) * 2) {
-            
-            // Clear path using A* pathfinding
-            clearDirectPath(map, start, end);
-        }
-        
-        // Clear random obstructive walls near the path
-        clearNearbyObstructions(map, start, end);
+        return sums;
     }
 
-    private static void clearDirectPath(char[][] map, Position start, Position end) {
-        int dx = Integer.compare(end.x - start.x, 0);
-        int dy = Integer.compare(end.y - start.y, 0);
-        
-        int x = start.x;
-        int y = start.y;
-        
-        while (x != end.x || y != end.y) {
-            // Clear walls in a 2-tile radius
-            for (int cy = -1; cy <= 1; cy++) {
-                for (int cx = -1; cx <= 1; cx++) {
-                    int nx = x + cx;
-                    int ny = y + cy;
-                    if (nx >= 0 && nx < map[0].length && ny >= 0 && ny < map.length) {
-                        if (map[ny][nx] == WALL) {
-                            map[ny][nx] = EMPTY;
-                        }
-                    }
-                }
-            }
-            
-            // Move towards goal
-            if (Math.abs(end.x - x) > Math.abs(end.y - y)) {
-                x += dx;
-            } else {
-                y += dy;
-            }
-        }
+    // Number of EMPTY tiles in the 5x5 window centred on (x, y), clipped to the map
+    private static int calculateClearance(int[] sums, int width, int height, int x, int y) {
+        int stride = width + 1;
+        int x0 = Math.max(0, x - 2), x1 = Math.min(width, x + 3);
+        int y0 = Math.max(0, y - 2), y1 = Math.min(height, y + 3);
+        return sums[y1 * stride + x1] - sums[y0 * stride + x1] - sums[y1 * stride + x0] + sums[y0 * stride + x0];
     }
 
-    private static void clearNearbyObstructions(char[][] map, Position start, Position end) {
-        Random rand = new Random();
-        int clearRadius = 3;
-        
-        // Get points along the approximate path
-        List<Position> pathPoints = new ArrayList<>();
-        int steps = Math.max(Math.abs(end.x - start.x), Math.abs(end.y - start.y));
-        
-        for (int i = 0; i <= steps; i++) {
-            int x = start.x + (end.x - start.x) * i / steps;
-            int y = start.y + (end.y - start.y) * i / steps;
-            pathPoints.add(new Position(x, y));
-        }
-        
-        // Clear obstructions near path points
-        for (Position point : pathPoints) {
-            for (int dy = -clearRadius; dy <= clearRadius; dy++) {
-                for (int dx = -clearRadius; dx <= clearRadius; dx++) {
-                    int nx = point.x + dx;
-                    int ny = point.y + dy;
-                    
-                    if (nx >= 1 && nx < map[0].length - 1 && 
-                        ny >= 1 && ny < map.length - 1) {
-                        if (map[ny][nx] == WALL && rand.nextDouble() < 0.4) {
-                            map[ny][nx] = EMPTY;
-                        }
-                    }
-                }
-            }
-        }
+    private static boolean isOpenSpace(char[][] map, int[] sums, int x, int y) {
+        return map[y][x] == EMPTY && calculateClearance(sums, map[0].length, map.length, x, y) >= 5;
     }
 
-    private static List<Position> findOpenSpaces(char[][] map) {
-        List<Position> spaces = new ArrayList<>();
-        for (int y = 1; y < map.length - 1; y++) {
-            for (int x = 1; x < map[0].length - 1; x++) {
-                if (map[y][x] == EMPTY && calculateClearance(map, new Position(x, y)) >= 5) {
-                    spaces.add(new Position(x, y));
-                }
-            }
-        }
-        return spaces;
-    }
+    /**
+     * Connects the goal to the player by removing the cheapest set of walls
+     * between them. A* weighs stepping through a wall as WALL_CLEAR_COST
+     * steps, so it cuts through only where going around would be longer than
+     * that, and never through the border. When the goal is already within
+     * reach by a short enough route, nothing is removed.
+     */
+    private static void clearObstructivePaths(char[][] map, Position start, Position end) {
+        GridSearch search = SEARCH.get();
+        if (search.astar(map, start.x, start.y, end.x, end.y, CLEAR_COST) < 0) return;
 
-    private static int calculatePathDistance(char[][] map, Position start, Position end) {
-        Queue<Position> queue = new LinkedList<>();
-        boolean[][] visited = new boolean[map.length][map[0].length];
-        int[][] distance = new int[map.length][map[0].length];
-        
-        queue.add(start);
-        visited[start.y][start.x] = true;
-        
-        int[][] dirs = {{0,1}, {1,0}, {0,-1}, {-1,0}};
-        
-        while (!queue.isEmpty()) {
-            Position current = queue.poll();
-            
-            if (current.x == end.x && current.y == end.y) {
-                return distance[current.y][current.x];
-            }
-            
-            for (int[] dir : dirs) {
-                int nx = current.x + dir[0];
-                int ny = current.y + dir[1];
-                
-                if (nx >= 0 && nx < map[0].length && ny >= 0 && ny < map.length &&
-                    !visited[ny][nx] && (map[ny][nx] == EMPTY || map[ny][nx] == GOAL)) {
-                    visited[ny][nx] = true;
-                    distance[ny][nx] = distance[current.y][current.x] + 1;
-                    queue.add(new Position(nx, ny));
-                }
-            }
+        int first = search.pack(start.x, start.y);
+        for (int cell = search.pack(end.x, end.y); cell != first; cell = search.parent(cell)) {
+            int x = search.x(cell);
+            int y = search.y(cell);
+            if (map[y][x] == WALL) map[y][x] = EMPTY;
         }
-        
-        return Integer.MAX_VALUE;
     }
 
-    private static void addPortals(char[][] map) {
-        Random rand = new Random();
-        List<Position> validPositions = new ArrayList<>();
-        
+    /**
+     * Places up to four portal pairs. Candidate cells (empty, with at least
+     * two empty neighbours) are gathered as packed indices into a pool of at
+     * most PORTAL_POOL_SIZE; once it is full, later candidates are reservoir
+     * sampled into it (Algorithm L, which draws a random skip between
+     * replacements instead of one number per candidate). Each pair takes a
+     * random pooled cell and the pooled cell farthest from it. Maps with no
+     * more candidates than the pool keep every one, in row-major order.
+     */
+    private static void addPortals(char[][] map, Random rand) {
+        int height = map.length;
+        int width = map[0].length;
+        int[] pool = new int[16];
+        int size = 0;
+        long seen = 0;
+        long nextTaken = -1;  // candidate number that replaces a pooled cell next
+        double w = 0;
+
         // Find valid portal locations
-        for (int y = 1; y < map.length - 1; y++) {
-            for (int x = 1; x < map[0].length - 1; x++) {
-                if (map[y][x] == EMPTY && hasEmptyNeighbors(map, x, y)) {
-                    validPositions.add(new Position(x, y));
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                if (map[y][x] != EMPTY || !hasEmptyNeighbors(map, x, y)) continue;
+
+                int cell = y * width + x;
+                if (size < PORTAL_POOL_SIZE) {
+                    if (size == pool.length) pool = Arrays.copyOf(pool, size * 2);
+                    pool[size++] = cell;
+                    if (size == PORTAL_POOL_SIZE) {
+                        w = Math.exp(Math.log(1 - rand.nextDouble()) / PORTAL_POOL_SIZE);
+                        nextTaken = size + (long) (Math.log(1 - rand.nextDouble()) / Math.log(1 - w));
+                    }
+                } else if (seen == nextTaken) {
+                    pool[rand.nextInt(PORTAL_POOL_SIZE)] = cell;
+                    w *= Math.exp(Math.log(1 - rand.nextDouble()) / PORTAL_POOL_SIZE);
+                    nextTaken += (long) (Math.log(1 - rand.nextDouble()) / Math.log(1 - w)) + 1;
                 }
+                seen++;
             }
         }
 
         // Place portal pairs
-        int numPairs = Math.min(4, validPositions.size() / 2);
-        for (int i = 0; i < numPairs && validPositions.size() >= 2; i++) {
+        int numPairs = Math.min(4, size / 2);
+        for (int i = 0; i < numPairs && size >= 2; i++) {
             // Place first portal
-            int idx1 = rand.nextInt(validPositions.size());
-            Position pos1 = validPositions.remove(idx1);
-            
+            int idx1 = rand.nextInt(size);
+            int pos1 = pool[idx1];
+            System.arraycopy(pool, idx1 + 1, pool, idx1, --size - idx1);
+            int x1 = pos1 % width, y1 = pos1 / width;
+
             // Find distant position for second portal
             int maxDist = 0;
             int bestIdx = -1;
-            
-            for (int j = 0; j < validPositions.size(); j++) {
-                Position pos2 = validPositions.get(j);
-                int dist = Math.abs(pos1.x - pos2.x) + Math.abs(pos1.y - pos2.y);
+
+            for (int j = 0; j < size; j++) {
+                int dist = Math.abs(x1 - pool[j] % width) + Math.abs(y1 - pool[j] / width);
                 if (dist > maxDist) {
                     maxDist = dist;
                     bestIdx = j;
                 }
             }
-            
+
             if (bestIdx != -1) {
-                Position pos2 = validPositions.remove(bestIdx);
-                map[pos1.y][pos1.x] = Character.forDigit(i, 10);
-                map[pos2.y][pos2.x] = Character.forDigit(i, 10);
+                int pos2 = pool[bestIdx];
+                System.arraycopy(pool, bestIdx + 1, pool, bestIdx, --size - bestIdx);
+                map[y1][x1] = Character.forDigit(i, 10);
+                map[pos2 / width][pos2 % width] = Character.forDigit(i, 10);
             }
         }
     }
 
     private static boolean hasEmptyNeighbors(char[][] map, int x, int y) {
         int emptyCount = 0;
-        int[][] directions = {{0,1}, {1,0}, {0,-1}, {-1,0}};
-        
-        for (int[] dir : directions) {
-            int nx = x + dir[0];
-            int ny = y + dir[1];
-            if (map[ny][nx] == EMPTY) emptyCount++;
+        for (int dir = 0; dir < GridSearch.DX.length; dir++) {
+            if (map[y + GridSearch.DY[dir]][x + GridSearch.DX[dir]] == EMPTY) emptyCount++;
         }
-        
         return emptyCount >= 2;
     }
 
-    public static String generateMap(int width, int height) {
-        StringBuilder mapContent = new StringBuilder();
-        mapContent.append("Standard " + height + "x" + width + " map with obstacles.\n");
-        mapContent.append(height + "\n");
-        mapContent.append(width + "\n");
-
-        Cell[][] grid = new Cell[height][width];
-        Random rand = new Random();
-        
-        // Initialize grid
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                grid[y][x] = new Cell();
-            }
+    /**
+     * Runs wave function collapse over a width x height grid with wall borders.
+     * Large maps are solved in tiles on the common fork-join pool.
+     */
+    private static char[][] collapseGrid(int width, int height, Random rand, WaveFunctionCollapse.Stats stats) {
+        if (width > TILED_THRESHOLD || height > TILED_THRESHOLD) {
+            return TiledWaveFunctionCollapse.solve(width, height, TILES, SUPPORT, WALL, rand.nextLong(),
+                    TiledWaveFunctionCollapse.DEFAULT_TILE_SIZE, ForkJoinPool.commonPool(), stats);
         }
 
+        WaveFunctionCollapse wfc = new WaveFunctionCollapse(width, height, TILES, SUPPORT, rand);
+
         // Force borders to be walls
         for (int x = 0; x < width; x++) {
-            collapse(grid, x, 0, WALL);
-            collapse(grid, x, height-1, WALL);
+            wfc.pin(x, 0, WALL);
+            wfc.pin(x, height-1, WALL);
         }
         for (int y = 0; y < height; y++) {
-            collapse(grid, 0, y, WALL);
-            collapse(grid, width-1, y, WALL);
+            wfc.pin(0, y, WALL);
+            wfc.pin(width-1, y, WALL);
         }
 
-        // Run wave function collapse
-        while (!isFullyCollapsed(grid)) {
-            Position minEntropyPos = findMinEntropyPosition(grid, rand);
-            if (minEntropyPos == null) break;
-            
-            Cell cell = grid[minEntropyPos.y][minEntropyPos.x];
-            if (cell.possibilities.isEmpty()) {
-                // Backtrack or restart if necessary
-                resetGrid(grid);
-                continue;
-            }
-            
-            // Randomly choose from possible values
-            List<Character> possible = new ArrayList<>(cell.possibilities);
-            char chosenValue = possible.get(rand.nextInt(possible.size()));
-            collapse(grid, minEntropyPos.x, minEntropyPos.y, chosenValue);
-            
-            // Propagate constraints
-            propagateConstraints(grid, minEntropyPos);
-        }
+        wfc.run();
+        if (stats != null) stats.add(wfc.stats);
+        return wfc.toMap();
+    }
 
-        // Convert to final map
-        char[][] map = new char[height][width];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                map[y][x] = grid[y][x].value;
-            }
-        }
+    public static String generateMap(int width, int height) {
+        return generateMap(width, height, new Random().nextLong(), null);
+    }
+
+    /**
+     * Generates a map that depends only on its dimensions and seed; the seed
+     * is recorded in the description line. If stats is not null, the solver's
+     * contradiction/backtrack/restart counts are added to it.
+     */
+    public static String generateMap(int width, int height, long seed, WaveFunctionCollapse.Stats stats) {
+        return generateMap(width, height, seed, DEFAULT_SPAWN_AREA, stats);
+    }
+
+    /**
+     * As above, with one enemy spawn point per spawnArea tiles; a spawnArea
+     * of 0 generates a map without enemies.
+     */
+    public static String generateMap(int width, int height, long seed, int spawnArea, WaveFunctionCollapse.Stats stats) {
+        Random rand = new Random(seed);
+
+        // Run wave function collapse
+        char[][] map = collapseGrid(width, height, rand, stats);
 
         // Place player and goal
         placePlayerAndGoal(map);
         
         // Add portals
-        addPortals(map);
+        addPortals(map, rand);
+
+        // Clear spike groups
+        clearSpikes(map, rand, SPIKE_MAX_CLUSTER_SIZE, SPIKE_REDUCTION_PROBABILITY);
 
-        // Convert to string
+        // Add enemy spawn points
+        addSpawnPoints(map, rand, spawnArea);
+
+        // Convert to string, once
+        String description = "Standard " + height + "x" + width + " map with obstacles (seed " + seed + ").\n";
+        StringBuilder mapContent = new StringBuilder(description.length() + 24 + height * (width + 1));
+        mapContent.append(description);
+        mapContent.append(height).append('\n');
+        mapContent.append(width).append('\n');
         for (char[] row : map) {
             mapContent.append(row).append('\n');
         }
-        
-        // Clear spike groups
-        clearSpikes(mapContent);
         return mapContent.toString();
     }
 
-    private static void clearSpikes(StringBuilder mapContent) {
-        // Convert StringBuilder to lines
-        String[] lines = mapContent.toString().split("\n");
-        
-        // First line is description, next two lines are height and width
-        String description = lines[0];
-        int height = Integer.parseInt(lines[1]);
-        int width = Integer.parseInt(lines[2]);
-        
-        // Create map from subsequent lines
-        char[][] map = new char[height][width];
-        for (int y = 0; y < height; y++) {
-            map[y] = lines[y + 3].toCharArray();
+    /**
+     * Marks one enemy spawn point per spawnArea tiles (at least one, unless
+     * spawnArea is 0), on empty tiles the player can walk to but that are at
+     * least SPAWN_MIN_DISTANCE steps away.
+     */
+    private static void addSpawnPoints(char[][] map, Random rand, int spawnArea) {
+        if (spawnArea <= 0) return;
+        int height = map.length;
+        int width = map[0].length;
+        int playerX = -1, playerY = -1;
+        for (int y = 0; y < height && playerX < 0; y++) {
+            for (int x = 0; x < width; x++) {
+                if (map[y][x] == PLAYER) {
+                    playerX = x;
+                    playerY = y;
+                    break;
+                }
+            }
         }
-        
-        // Spike reduction parameters
-        int MAX_CLUSTER_SIZE = 0;  // Maximum allowed spikes in a cluster
-        double SPIKE_REDUCTION_PROBABILITY = 1.0; // Probability of removing excess spikes
-        
-        // Identify and process spike clusters
+        if (playerX < 0) return;
+
+        GridSearch search = SEARCH.get();
+        search.bfs(map, playerX, playerY, -1, NOT_WALL);
+
+        int[] candidates = new int[16];
+        int count = 0;
+        for (int cell = 0; cell < width * height; cell++) {
+            if (search.distance(cell) >= SPAWN_MIN_DISTANCE && map[search.y(cell)][search.x(cell)] == EMPTY) {
+                if (count == candidates.length) candidates = Arrays.copyOf(candidates, count * 2);
+                candidates[count++] = cell;
+            }
+        }
+
+        // Partial Fisher-Yates shuffle picks the spawn points
+        int spawns = Math.min(count, Math.max(1, width * height / spawnArea));
+        for (int i = 0; i < spawns; i++) {
+            int j = i + rand.nextInt(count - i);
+            int cell = candidates[j];
+            candidates[j] = candidates[i];
+            map[search.y(cell)][search.x(cell)] = SPAWN;
+        }
+    }
+
+    /**
+     * Labels 8-connected spike clusters with a flood fill and trims each one
+     * that is larger than maxClusterSize: a random selection of maxClusterSize
+     * spikes is kept, and each of the rest becomes empty with the given
+     * probability. Works directly on the grid.
+     */
+    private static void clearSpikes(char[][] map, Random rand, int maxClusterSize, double reductionProbability) {
+        int height = map.length;
+        int width = map[0].length;
+
+        // One epoch for the whole map, so each spike is labelled exactly once
+        GridSearch search = SEARCH.get();
+        search.begin(width, height);
+        int[] cluster = new int[16];
+
         for (int y = 1; y < height - 1; y++) {
             for (int x = 1; x < width - 1; x++) {
-                if (map[y][x] == '*') {
-                    // Check surrounding area for spike clusters
-                    int[][] directions = {{-1,0}, {1,0}, {0,-1}, {0,1}, {-1,-1}, {-1,1}, {1,-1}, {1,1}};
-                    List<Position> spikeCluster = new ArrayList<>();
-                    spikeCluster.add(new Position(x, y));
-                    
-                    // Find adjacent spikes
-                    for (int[] dir : directions) {
-                        int nx = x + dir[0];
-                        int ny = y + dir[1];
-                        if (nx >= 0 && nx < width && ny >= 0 && ny < height && map[ny][nx] == '*') {
-                            spikeCluster.add(new Position(nx, ny));
-                        }
-                    }
-                    
-                    // Reduce spike clusters that are too large
-                    if (spikeCluster.size() > MAX_CLUSTER_SIZE) {
-                        Random rand = new Random();
-                        Collections.shuffle(spikeCluster);
-                        
-                        // Remove spikes beyond MAX_CLUSTER_SIZE probabilistically
-                        for (int i = MAX_CLUSTER_SIZE; i < spikeCluster.size(); i++) {
-                            if (rand.nextDouble() < SPIKE_REDUCTION_PROBABILITY) {
-                                Position spike = spikeCluster.get(i);
-                                map[spike.y][spike.x] = '+';  // Replace with empty space
+                if (map[y][x] != SPIKE || !search.visit(search.pack(x, y), 0)) continue;
+
+                // Flood fill the cluster, collecting its cells as they are dequeued
+                int size = 0;
+                while (search.hasNext()) {
+                    int cell = search.next();
+                    if (size == cluster.length) cluster = Arrays.copyOf(cluster, size * 2);
+                    cluster[size++] = cell;
+
+                    int cx = search.x(cell);
+                    int cy = search.y(cell);
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            int nx = cx + dx;
+                            int ny = cy + dy;
+                            if (nx >= 0 && nx < width && ny >= 0 && ny < height && map[ny][nx] == SPIKE) {
+                                search.visit(search.pack(nx, ny), 0);
                             }
                         }
                     }
                 }
+
+                // Reduce spike clusters that are too large
+                if (size <= maxClusterSize) continue;
+                for (int i = 0; i < maxClusterSize; i++) {
+                    int j = i + rand.nextInt(size - i);
+                    int kept = cluster[j];
+                    cluster[j] = cluster[i];
+                    cluster[i] = kept;
+                }
+                for (int i = maxClusterSize; i < size; i++) {
+                    if (reductionProbability >= 1.0 || rand.nextDouble() < reductionProbability) {
+                        map[search.y(cluster[i])][search.x(cluster[i])] = EMPTY;  // Replace with empty space
+                    }
+                }
             }
         }
-        
-        // Rebuild mapContent with modified map
-        mapContent.setLength(0);  // Clear existing content
-        mapContent.append(description).append("\n");
-        mapContent.append(height).append("\n");
-        mapContent.append(width).append("\n");
-        
-        for (char[] row : map) {
-            mapContent.append(row).append('\n');
+    }
+
+    // -- Endless world chunks --
+    // Chunk c covers world columns [c * chunkWidth, (c + 1) * chunkWidth); its first
+    // column is seam c. Seams are generated on their own, and each chunk is solved
+    // with both of its seams as fixed context, so any chunk can be regenerated
+    // identically from the world seed no matter which neighbours are loaded.
+
+    /**
+     * Row of the guaranteed passage through seam s. Seam 0 is the left edge
+     * of the world, so its passage row is where the player starts.
+     */
+    public static int seamPassageRow(long worldSeed, int seam, int height) {
+        return 1 + new Random(mapSeed(worldSeed, 2 * seam + 1)).nextInt(height - 2);
+    }
+
+    private static char[] generateSeam(long worldSeed, int seam, int height) {
+        char[] column = new char[height];
+        if (seam == 0) {
+            Arrays.fill(column, WALL);
+            return column;
+        }
+
+        Random rand = new Random(mapSeed(worldSeed, 2 * seam + 1));
+        int passage = 1 + rand.nextInt(height - 2);
+        WaveFunctionCollapse wfc = new WaveFunctionCollapse(1, height, TILES, SUPPORT, rand);
+        wfc.pin(0, 0, WALL);
+        wfc.pin(0, height - 1, WALL);
+        wfc.fix(0, passage, EMPTY);
+        wfc.run();
+
+        for (int y = 0; y < height; y++) {
+            column[y] = wfc.valueAt(0, y);
+        }
+        return column;
+    }
+
+    /**
+     * Generates chunk number `chunk` of an endless world into dest columns
+     * [destX, destX + chunkWidth). Top and bottom rows are walls, and a
+     * corridor is carved from this chunk's seam passage to the next one's,
+     * so the world can always be crossed.
+     */
+    public static void generateChunk(long worldSeed, int chunk, int chunkWidth, char[][] dest, int destX) {
+        int height = dest.length;
+        char[] left = generateSeam(worldSeed, chunk, height);
+        char[] right = generateSeam(worldSeed, chunk + 1, height);
+        Random rand = new Random(mapSeed(worldSeed, 2 * chunk));
+
+        // The chunk plus the next seam, which is fixed context on the right
+        WaveFunctionCollapse wfc = new WaveFunctionCollapse(chunkWidth + 1, height, TILES, SUPPORT, rand);
+        for (int x = 0; x <= chunkWidth; x++) {
+            wfc.pin(x, 0, WALL);
+            wfc.pin(x, height - 1, WALL);
+        }
+        for (int y = 1; y < height - 1; y++) {
+            wfc.fix(0, y, left[y]);
+            wfc.fix(chunkWidth, y, right[y]);
+        }
+        wfc.run();
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < chunkWidth; x++) {
+                dest[y][destX + x] = wfc.valueAt(x, y);
+            }
+        }
+
+        // Carve the corridor; an empty tile is a valid neighbour of every tile
+        int y = seamPassageRow(worldSeed, chunk, height);
+        int target = seamPassageRow(worldSeed, chunk + 1, height);
+        for (int x = 1; x < chunkWidth; x++) {
+            int remaining = chunkWidth - x;
+            do {
+                dest[y][destX + x] = EMPTY;
+                if (Math.abs(target - y) >= remaining) {
+                    y += Integer.compare(target, y);
+                } else if (rand.nextInt(4) == 0) {
+                    y = Math.max(1, Math.min(height - 2, y + (rand.nextBoolean() ? 1 : -1)));
+                } else {
+                    break;
+                }
+            } while (true);
         }
     }
 
@@ -563,59 +554,157 @@ public class MapGenerator {
         return mapsDir.getAbsolutePath();
     }
 
-    public static void saveNewMap(String mapContent) {
-        String mapDir = getMapDirectory();
-        File directory = new File(mapDir);
-        
-        int nextNumber = 1;
-        File[] files = directory.listFiles((dir, name) -> name.matches("map\\d+\\.txt"));
-        if (files != null && files.length > 0) {
-            for (File file : files) {
+    // Seeds the number counter from the map catalog instead of a directory scan
+    private static synchronized AtomicInteger mapNumbers(File directory) {
+        if (nextMapNumber == null) {
+            nextMapNumber = new AtomicInteger(MapCatalog.open(directory).nextNumber());
+        }
+        return nextMapNumber;
+    }
+
+    /**
+     * Saves the map under the next free number and returns that number,
+     * or -1 on failure. Numbers come from an atomic counter and each file is
+     * claimed with an exclusive create, so concurrent saves (in this process
+     * or another) never share a file. The map is also added to the catalog.
+     */
+    public static int saveNewMap(String mapContent) {
+        File directory = new File(getMapDirectory());
+        AtomicInteger numbers = mapNumbers(directory);
+
+        try {
+            File file;
+            while (true) {
+                file = new File(directory, "map" + numbers.getAndIncrement() + ".txt");
                 try {
-                    int num = Integer.parseInt(file.getName().substring(3, file.getName().length() - 4));
-                    nextNumber = Math.max(nextNumber, num + 1);
-                } catch (NumberFormatException e) {
-                    continue;
+                    Files.createFile(file.toPath());
+                    break;
+                } catch (FileAlreadyExistsException e) {
+                    continue; // taken by someone else, try the next number
                 }
             }
-        }
 
-        try {
-            File file = new File(directory, "map" + nextNumber + ".txt");
             FileWriter writer = new FileWriter(file);
             writer.write(mapContent);
             writer.close();
             System.out.println("Map saved as: " + file.getName());
+            int number = Integer.parseInt(file.getName().substring(3, file.getName().length() - 4));
+            MapCatalog.open(directory).record(number, mapContent);
+            return number;
         } catch (IOException e) {
             System.err.println("Error saving map: " + e.getMessage());
+            return -1;
         }
     }
 
-    public static void main(String[] args) {
+    // Picks an even dimension in [min, max), as main always has
+    private static int randomDimension(Random rand, int min, int max) {
+        int size = min + (int)(rand.nextDouble() * (max - min));
+        return size - (size % 2);
+    }
+
+    // SplitMix64 finalizer, so neighbouring indices get unrelated seeds
+    private static long mapSeed(long baseSeed, int index) {
+        long z = baseSeed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Usage: MapGenerator batch <count> [<min>-<max>] [seed] [threads] [tiles per spawn]
+     * Generates count maps across a thread pool. Map i uses mapSeed(seed, i),
+     * so a batch is reproducible from its base seed.
+     */
+    private static void runBatch(String[] args) throws InterruptedException {
+        final int count;
+        int minSize = MIN_SIZE;
+        int maxSize = MAX_SIZE;
+        long baseSeed = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        int spawnArea = DEFAULT_SPAWN_AREA;
+
+        try {
+            count = Integer.parseInt(args[1]);
+            if (args.length > 2) {
+                String[] range = args[2].split("-");
+                minSize = Integer.parseInt(range[0]);
+                maxSize = Integer.parseInt(range[range.length - 1]);
+            }
+            if (args.length > 3) baseSeed = Long.parseLong(args[3]);
+            if (args.length > 4) threads = Integer.parseInt(args[4]);
+            if (args.length > 5) spawnArea = Integer.parseInt(args[5]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println("Usage: MapGenerator batch <count> [<min>-<max>] [seed] [threads] [tiles per spawn]");
+            return;
+        }
+        if (count <= 0 || minSize < 3 || maxSize < minSize || threads <= 0 || spawnArea < 0) {
+            System.out.println("Invalid batch settings: count and threads must be positive, min size at least 3, tiles per spawn not negative.");
+            return;
+        }
+
+        System.out.println("Generating " + count + " maps (" + minSize + "-" + maxSize + ", seed " + baseSeed + ") on " + threads + " threads");
+        long start = System.nanoTime();
+        AtomicInteger done = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < count; i++) {
+            final long seed = mapSeed(baseSeed, i);
+            final int lo = minSize, hi = maxSize, area = spawnArea;
+            pool.execute(() -> {
+                Random dims = new Random(seed);
+                int width = hi > lo ? randomDimension(dims, lo, hi) : lo;
+                int height = hi > lo ? randomDimension(dims, lo, hi) : lo;
+
+                WaveFunctionCollapse.Stats stats = new WaveFunctionCollapse.Stats();
+                saveNewMap(generateMap(width, height, seed, area, stats));
+                System.out.println("[" + done.incrementAndGet() + "/" + count + "] " + width + "x" + height + " seed " + seed + " (" + stats + ")");
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %d maps in %.1f s (%.1f maps/s)%n", count, seconds, count / seconds);
+    }
+
+    /**
+     * Usage: MapGenerator [tiles per spawn], or see runBatch.
+     * Generates two maps of the default size range.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length > 0 && args[0].equalsIgnoreCase("batch")) {
+            runBatch(args);
+            return;
+        }
+
+        int spawnArea = DEFAULT_SPAWN_AREA;
+        try {
+            if (args.length > 0) spawnArea = Integer.parseInt(args[0]);
+        } catch (NumberFormatException e) {
+            spawnArea = -1;
+        }
+        if (spawnArea < 0) {
+            System.out.println("Usage: MapGenerator [tiles per spawn, 0 for no enemies]");
+            System.out.println("       MapGenerator batch <count> [<min>-<max>] [seed] [threads] [tiles per spawn]");
+            return;
+        }
+
         Random rand = new Random();
         
-        // Define dimension bounds
-        final int MIN_WIDTH = 75;
-        final int MAX_WIDTH = 100;
-        final int MIN_HEIGHT = 75;
-        final int MAX_HEIGHT = 100;
-        
         // Generate multiple maps
         for (int i = 0; i < 2; i++) {
-            // Generate uniform dimensions
-            int width = MIN_WIDTH + (int)(rand.nextDouble() * (MAX_WIDTH - MIN_WIDTH));
-            int height = MIN_HEIGHT + (int)(rand.nextDouble() * (MAX_HEIGHT - MIN_HEIGHT));
-            
-            // Ensure dimensions are even for better symmetry (optional)
-            width = width - (width % 2);
-            height = height - (height % 2);
+            // Generate uniform dimensions, even for better symmetry (optional)
+            int width = randomDimension(rand, MIN_SIZE, MAX_SIZE);
+            int height = randomDimension(rand, MIN_SIZE, MAX_SIZE);
             
-            String mapContent = generateMap(width, height);
+            WaveFunctionCollapse.Stats stats = new WaveFunctionCollapse.Stats();
+            String mapContent = generateMap(width, height, rand.nextLong(), spawnArea, stats);
             if (mapContent != null) {
                 saveNewMap(mapContent);  // Call static method directly
             }
             
-            System.out.println("Generated map with dimensions: " + width + "x" + height);
+            System.out.println("Generated map with dimensions: " + width + "x" + height + " (" + stats + ")");
         }
     }
-}
\ No newline at end of file
+}
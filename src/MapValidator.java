@@ -0,0 +1,283 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Checks that maps can actually be won.
+ *
+ * The reachability graph is every walkable tile (anything but a wall,
+ * inside the border, as VisualizedMap.validToMove allows), where stepping
+ * toward a paired portal may also land on its pair, as Ctrl+move does in
+ * game. Entering a spike costs one hit point. A layered breadth-first
+ * search from the player finds the fewest spikes any route to the goal
+ * must cross: all tiles reachable with k hits are flooded before any with
+ * k + 1. A map is solvable if that is fewer than the player's starting HP.
+ * Every spike is counted, although invincibility frames can sometimes
+ * absorb a second one, so a solvable verdict never relies on them.
+ *
+ * Maps are checked in parallel, one set of search buffers per thread.
+ *
+ * Usage: java MapValidator [map files or directories ...] [-threads n] [-report file]
+ * Checks every map in maps/ on all cores by default. Exits with status 1
+ * if any map is not solvable.
+ *
+ * Dependencies:
+ * BinaryMapFile.java, GridSearch.java, Portal.java, Player.java
+ */
+public class MapValidator {
+    public enum Verdict { SOLVABLE, LETHAL, UNREACHABLE, INVALID }
+
+    private static final char WALL = '#';
+    private static final char SPIKE = '*';
+    private static final char GOAL = ':';
+
+    public static class Result {
+        public final String name;
+        public final Verdict verdict;
+        public final int width, height;
+        public final int spikeHits;  // fewest spikes on a route to the goal, -1 if none
+        public final int reachable;  // tiles reachable from the player, at any HP cost
+        public final String problem; // why the map is INVALID, otherwise null
+
+        Result(String name, Verdict verdict, int width, int height, int spikeHits, int reachable, String problem) {
+            this.name = name;
+            this.verdict = verdict;
+            this.width = width;
+            this.height = height;
+            this.spikeHits = spikeHits;
+            this.reachable = reachable;
+            this.problem = problem;
+        }
+
+        @Override
+        public String toString() {
+            if (verdict == Verdict.INVALID) return String.format("%-16s INVALID      %s", name, problem);
+            return String.format("%-16s %-12s %dx%d, %s, %d tiles reachable", name, verdict, width, height,
+                spikeHits < 0 ? "no route to the goal" : spikeHits + " spike hit" + (spikeHits == 1 ? "" : "s"), reachable);
+        }
+    }
+
+    /**
+     * Search buffers, grown to the largest map seen and reused, so checking
+     * a map allocates only what loading it does.
+     */
+    private static class Search {
+        int[] hits = new int[0];      // fewest spikes to reach each cell, -1 if not reached
+        int[] partner = new int[0];   // cell of each portal's pair, -1 elsewhere
+        int[] layer = new int[0];     // cells reached with the current number of hits
+        int[] nextLayer = new int[0]; // spikes entered from it, one hit more
+
+        void ensure(int cells) {
+            if (hits.length < cells) {
+                hits = new int[cells];
+                partner = new int[cells];
+                layer = new int[cells];
+                nextLayer = new int[cells];
+            }
+            Arrays.fill(hits, 0, cells, -1);
+            Arrays.fill(partner, 0, cells, -1);
+        }
+    }
+
+    private static final ThreadLocal<Search> SEARCH = ThreadLocal.withInitial(Search::new);
+
+    // Checks one map file, in the text or binary format
+    public static Result validate(File file) {
+        BinaryMapFile map;
+        try {
+            map = file.getName().endsWith(BinaryMapFile.EXTENSION)
+                ? BinaryMapFile.read(file.getPath())
+                : BinaryMapFile.parseText(file.getPath());
+        } catch (IOException | RuntimeException e) {
+            return new Result(file.getName(), Verdict.INVALID, 0, 0, -1, 0, "unreadable: " + e.getMessage());
+        }
+        return validate(file.getName(), map.tiles, map.iconX, map.iconY, map.portalPairs);
+    }
+
+    public static Result validate(String name, char[][] tiles, int startX, int startY, List<Portal[]> portalPairs) {
+        int height = tiles.length;
+        int width = height == 0 ? 0 : tiles[0].length;
+        if (startX < 0) return new Result(name, Verdict.INVALID, width, height, -1, 0, "no player tile 'x'");
+
+        Search search = SEARCH.get();
+        search.ensure(width * height);
+        int[] hits = search.hits;
+        int[] partner = search.partner;
+        for (Portal[] pair : portalPairs) {
+            int a = pair[0].getY() * width + pair[0].getX();
+            int b = pair[1].getY() * width + pair[1].getX();
+            partner[a] = b;
+            partner[b] = a;
+        }
+
+        boolean hasGoal = false;
+        int spikeHits = -1;
+        int reachable = 0;
+
+        int[] layer = search.layer;
+        int[] nextLayer = search.nextLayer;
+        int layerSize = 0;
+        int start = startY * width + startX;
+        hits[start] = 0;
+        layer[layerSize++] = start;
+
+        for (int k = 0; layerSize > 0; k++) {
+            // Flood everything reachable with k hits; spikes go to the next layer
+            int nextSize = 0;
+            for (int head = 0; head < layerSize; head++) {
+                int cell = layer[head];
+                reachable++;
+                int cx = cell % width;
+                int cy = cell / width;
+                if (tiles[cy][cx] == GOAL) {
+                    hasGoal = true;
+                    if (spikeHits < 0) spikeHits = k;
+                }
+
+                for (int dir = 0; dir < GridSearch.DX.length; dir++) {
+                    int nx = cx + GridSearch.DX[dir];
+                    int ny = cy + GridSearch.DY[dir];
+                    // Same bounds as VisualizedMap.validToMove
+                    if (nx < 1 || nx >= width - 1 || ny < 1 || ny >= height - 1 || tiles[ny][nx] == WALL) continue;
+
+                    int next = ny * width + nx;
+                    if (hits[next] < 0) {
+                        if (tiles[ny][nx] == SPIKE) {
+                            hits[next] = k + 1;
+                            nextLayer[nextSize++] = next;
+                        } else {
+                            hits[next] = k;
+                            layer[layerSize++] = next;
+                        }
+                    }
+                    // Teleporting lands on the pair, which is never a spike
+                    int out = partner[next];
+                    if (out >= 0 && hits[out] < 0) {
+                        hits[out] = k;
+                        layer[layerSize++] = out;
+                    }
+                }
+            }
+
+            int[] swap = layer;
+            layer = nextLayer;
+            nextLayer = swap;
+            layerSize = nextSize;
+        }
+
+        if (!hasGoal) {
+            // Tell a map without a goal apart from one whose goal is walled off
+            for (char[] row : tiles) {
+                for (char c : row) {
+                    if (c == GOAL) hasGoal = true;
+                }
+            }
+            if (!hasGoal) return new Result(name, Verdict.INVALID, width, height, -1, reachable, "no goal tile ':'");
+            return new Result(name, Verdict.UNREACHABLE, width, height, -1, reachable, null);
+        }
+        Verdict verdict = spikeHits < Player.STARTING_HP ? Verdict.SOLVABLE : Verdict.LETHAL;
+        return new Result(name, verdict, width, height, spikeHits, reachable, null);
+    }
+
+    // Checks the files on a pool of threads; results come back in the order given
+    public static List<Result> validateAll(List<File> files, int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Result>> tasks = new ArrayList<>();
+            for (File file : files) {
+                tasks.add(() -> validate(file));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : pool.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Map files in a directory, text maps by number, plus binary maps with no text source
+    private static List<File> mapFiles(File dir) {
+        File[] found = dir.listFiles((d, name) -> name.matches("map\\d+\\.(txt|bin)"));
+        List<File> files = new ArrayList<>();
+        if (found == null) return files;
+
+        for (File file : found) {
+            String name = file.getName();
+            if (name.endsWith(BinaryMapFile.EXTENSION)
+                && new File(dir, name.substring(0, name.length() - BinaryMapFile.EXTENSION.length()) + ".txt").exists()) {
+                continue;
+            }
+            files.add(file);
+        }
+        files.sort(Comparator.comparingInt(f -> Integer.parseInt(f.getName().replaceAll("\\D", ""))));
+        return files;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        List<File> files = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        File reportFile = null;
+        boolean named = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-report")) {
+                    reportFile = new File(args[++i]);
+                } else {
+                    named = true;
+                    File file = new File(args[i]);
+                    if (file.isDirectory()) files.addAll(mapFiles(file));
+                    else files.add(file);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println("Usage: java MapValidator [map files or directories ...] [-threads n] [-report file]");
+            return;
+        }
+        if (!named) files.addAll(mapFiles(new File("maps")));
+        if (threads <= 0) {
+            System.out.println("Invalid thread count: " + threads);
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = validateAll(files, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        EnumMap<Verdict, Integer> counts = new EnumMap<>(Verdict.class);
+        for (Verdict verdict : Verdict.values()) counts.put(verdict, 0);
+        for (Result result : results) counts.merge(result.verdict, 1, Integer::sum);
+
+        String summary = String.format("%d maps checked in %.2f s on %d threads (%.0f maps/s): %d solvable, %d lethal, %d unreachable, %d invalid",
+            results.size(), seconds, threads, results.size() / Math.max(seconds, 1e-9),
+            counts.get(Verdict.SOLVABLE), counts.get(Verdict.LETHAL), counts.get(Verdict.UNREACHABLE), counts.get(Verdict.INVALID));
+
+        // The full report goes to the file if there is one; failures are always printed
+        if (reportFile != null) {
+            try (PrintWriter out = new PrintWriter(new FileWriter(reportFile))) {
+                for (Result result : results) out.println(result);
+                out.println(summary);
+            } catch (IOException e) {
+                System.err.println("Error writing report: " + e.getMessage());
+            }
+        }
+        for (Result result : results) {
+            if (reportFile == null || result.verdict != Verdict.SOLVABLE) System.out.println(result);
+        }
+        System.out.println(summary);
+        if (reportFile != null) System.out.println("Report written to " + reportFile.getPath());
+
+        if (counts.get(Verdict.SOLVABLE) < results.size()) System.exit(1);
+    }
+}
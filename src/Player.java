@@ -4,10 +4,17 @@
  * - Hitpoints
  */
 public class Player {
-    private int hp = 3; // 3 by default
+    public static final int STARTING_HP = 3;
+    private int hp = STARTING_HP;
     private boolean isInvincible = false;
     private long invincibilityStartTime = 0;
     private static final long INVINICIBILITY_DURATION = 1500; // 1500 ms --> 1.5 seconds
+    private GameClock clock = new GameClock(Game.DEFAULT_FPS); // replaced by the game's clock
+
+    // Invincibility is timed in game time, on the same clock as movement
+    public void setClock(GameClock clock){
+        this.clock = clock;
+    }
 
     public int getHP(){
         return hp;
@@ -18,13 +25,13 @@ public class Player {
             this.hp = hp;
             // Start invincibility frames after taking damage
             isInvincible = true;
-            invincibilityStartTime = System.currentTimeMillis();
+            invincibilityStartTime = clock.millis();
         }
     }
 
     public boolean isInvincible(){
         if(isInvincible){
-            long currentTime = System.currentTimeMillis();
+            long currentTime = clock.millis();
             if(currentTime - invincibilityStartTime >= INVINICIBILITY_DURATION){
                 isInvincible = false;
             }
@@ -0,0 +1,163 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Headless batch runner: plays a map over and over with a bot, as fast as
+ * the CPU allows, and reports how the runs ended and how many ticks per
+ * second were simulated. Nothing opens a window or draws to the terminal,
+ * so it runs in CI and on servers.
+ *
+ * Usage: java Simulation <map file> [runs] [max ticks per run] [seed]
+ *        java Simulation replay <session log> [runs]
+ *
+ * The replay form plays a recorded session back uncapped, checks it ends
+ * the way the session did, and reports tick latency percentiles, which
+ * makes a recorded session a repeatable CPU benchmark.
+ *
+ * Dependencies:
+ * Game.java, VisualizedMap.java, InputSource.java, KeyInput.java,
+ * InputLog.java, Histogram.java
+ */
+public class Simulation {
+    private static final int DEFAULT_RUNS = 1000;
+    private static final long DEFAULT_MAX_TICKS = 60L * 60 * Game.DEFAULT_FPS; // an hour of game time
+
+    /**
+     * Bot that holds one direction for a random number of ticks, then
+     * picks another. Seeded, so every run is reproducible.
+     */
+    static class Wanderer implements InputSource {
+        private static final int[] MOVES = {KeyInput.UP, KeyInput.LEFT, KeyInput.DOWN, KeyInput.RIGHT};
+
+        private long random;
+        private int keys = 0;
+        private int pressed = 0;
+        private int ticksLeft = 0;
+
+        Wanderer(long seed){
+            random = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+        }
+
+        @Override
+        public int poll(){
+            pressed = 0;
+            if(ticksLeft-- <= 0){
+                int next = MOVES[nextRandom(MOVES.length)];
+                if(next != keys) pressed = next;
+                keys = next;
+                ticksLeft = 5 + nextRandom(60);
+            }
+            return keys;
+        }
+
+        @Override
+        public int pressed(){
+            return pressed;
+        }
+
+        // Uniform in [0, bound), xorshift64*
+        private int nextRandom(int bound){
+            random ^= random >>> 12;
+            random ^= random << 25;
+            random ^= random >>> 27;
+            return (int) (((random * 0x2545F4914F6CDD1DL) >>> 33) * bound >>> 31);
+        }
+    }
+
+    public static void main(String[] args){
+        if(args.length < 1){
+            System.out.println("Usage: java Simulation <map file> [runs] [max ticks per run] [seed]");
+            System.out.println("       java Simulation replay <session log> [runs]");
+            return;
+        }
+        if(args[0].equals("replay")){
+            replay(args);
+            return;
+        }
+        String path = new File(args[0]).getAbsolutePath();
+        int runs;
+        long maxTicks, seed;
+        try{
+            runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+            maxTicks = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_MAX_TICKS;
+            seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        }catch(NumberFormatException e){
+            System.out.println("Usage: java Simulation <map file> [runs] [max ticks per run] [seed]");
+            return;
+        }
+
+        int won = 0, died = 0, unfinished = 0;
+        long ticks = 0;
+        long simulationNanos = 0;
+        long start = System.nanoTime();
+
+        for(int run = 0; run < runs; run++){
+            VisualizedMap map;
+            try{
+                map = new VisualizedMap(path, Game.DEFAULT_VIEWPORT_WIDTH, Game.DEFAULT_VIEWPORT_HEIGHT);
+            }catch(IOException e){
+                System.err.println("Cannot read map: " + e.getMessage());
+                return;
+            }
+            Game game = new Game(map, new Wanderer(seed + run));
+
+            long runStart = System.nanoTime();
+            ticks += game.simulate(maxTicks);
+            simulationNanos += System.nanoTime() - runStart;
+
+            if(map.gameWon) won++;
+            else if(map.player.getHP() <= 0) died++;
+            else unfinished++;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d runs: %d won, %d died, %d unfinished after %d ticks%n", runs, won, died, unfinished, maxTicks);
+        System.out.printf("%d ticks in %.2f s simulating: %.0f ticks/s%n", ticks, simulationNanos / 1e9, ticks / (simulationNanos / 1e9));
+        System.out.printf("%.2f s including map loads: %.0f runs/hour%n", seconds, runs / seconds * 3600);
+    }
+
+    // Replays a session log uncapped, timing every tick
+    private static void replay(String[] args){
+        InputLog log;
+        int runs;
+        try{
+            log = InputLog.read(new File(args[1]));
+            runs = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        }catch(ArrayIndexOutOfBoundsException | NumberFormatException e){
+            System.out.println("Usage: java Simulation replay <session log> [runs]");
+            return;
+        }catch(IOException e){
+            System.err.println("Cannot read session: " + e.getMessage());
+            return;
+        }
+
+        System.out.println("Replaying " + log);
+        Histogram tickTimes = new Histogram();
+        int matched = 0;
+        long ticks = 0;
+        long simulationNanos = 0;
+
+        for(int run = 0; run < runs; run++){
+            Game game;
+            try{
+                game = new Game(log.openMap(), log.replay());
+            }catch(IOException e){
+                System.err.println("Cannot read the session's map: " + e.getMessage());
+                return;
+            }
+            while(!game.isOver()){
+                long tickStart = System.nanoTime();
+                game.simulate(1);
+                long elapsed = System.nanoTime() - tickStart;
+                tickTimes.record(elapsed);
+                simulationNanos += elapsed;
+                ticks++;
+            }
+            if(log.matches(game.map)) matched++;
+        }
+
+        System.out.printf("%d/%d runs matched the recorded session%n", matched, runs);
+        System.out.printf("%d ticks in %.2f s: %.0f ticks/s%n", ticks, simulationNanos / 1e9, ticks / (simulationNanos / 1e9));
+        System.out.println("Tick time: " + tickTimes.summary(1e3, "us"));
+    }
+}
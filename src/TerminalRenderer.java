@@ -0,0 +1,186 @@
+import java.lang.reflect.Proxy;
+
+/**
+ * Differential renderer for the map viewport.
+ *
+ * Keeps the glyphs of the frame it last emitted and, on the next frame,
+ * writes only the cells whose glyph changed, each run of changed cells
+ * preceded by one cursor-position escape. The whole viewport is redrawn
+ * when the previous screen cannot be trusted: the first frame, after the
+ * viewport scrolled or changed size, after the terminal was resized, or
+ * after invalidate().
+ *
+ * Frames are built from the pre-encoded glyph bytes into a FrameBuffer,
+ * so rendering allocates nothing once the buffers have grown. Colour
+ * escapes are only written where the colour changes along the output, so
+ * a run of walls or empty tiles costs one escape instead of one per tile.
+ *
+ * Dependencies:
+ * VisualizedMap.java, FrameBuffer.java
+ */
+public class TerminalRenderer {
+    private static final byte[] CSI = FrameBuffer.ascii("\033[");
+    private static final byte[] CLEAR_TO_END_OF_LINE = FrameBuffer.ascii("\033[K");
+    private static final byte[] RESET = FrameBuffer.ascii("\033[0m");
+
+    private final int top; // screen row (1-based) of the first viewport row
+
+    private int[] current = new int[0];
+    private int[] previous = new int[0];
+    private int width = -1, height = -1;
+    private int viewportX, viewportY;
+    private volatile boolean invalid = true;
+
+    // Colour runs: a colour escape is only written when the next glyph's
+    // colour differs from the one the terminal is already using
+    private boolean coalesceColors = true;
+    private byte[] sgr = null; // colour in effect, null if unknown
+
+    // Diagnostics for the last frame
+    private int lastCellsWritten = 0;
+    private int lastFrameBytes = 0;
+    private int lastUncoalescedBytes = 0; // the same frame with an escape pair per glyph
+    private int glyphBytes, uncoalescedGlyphBytes;
+
+    public TerminalRenderer(int top){
+        this.top = top;
+        watchTerminalResize();
+    }
+
+    // Forces a full redraw on the next frame
+    public void invalidate(){
+        invalid = true;
+    }
+
+    public int getLastCellsWritten(){ return lastCellsWritten; }
+    public int getLastFrameBytes(){ return lastFrameBytes; }
+    public int getLastUncoalescedBytes(){ return lastUncoalescedBytes; }
+
+    public void setCoalesceColors(boolean coalesceColors){
+        this.coalesceColors = coalesceColors;
+    }
+
+    /**
+     * Appends the bytes that bring the screen from the previous frame to
+     * the current state of map.
+     */
+    public void render(VisualizedMap map, FrameBuffer out){
+        int w = map.VIEWPORT_WIDTH;
+        int h = map.VIEWPORT_HEIGHT;
+        if(current.length != w * h){
+            current = new int[w * h];
+            previous = new int[w * h];
+        }
+        map.captureViewport(current);
+
+        boolean full = invalid || w != width || h != height
+                    || VisualizedMap.viewportX != viewportX || VisualizedMap.viewportY != viewportY;
+        invalid = false;
+        width = w;
+        height = h;
+        viewportX = VisualizedMap.viewportX;
+        viewportY = VisualizedMap.viewportY;
+
+        int start = out.size();
+        sgr = null;
+        glyphBytes = 0;
+        uncoalescedGlyphBytes = 0;
+
+        if(full){
+            drawAll(out);
+        }else{
+            drawChanges(out);
+        }
+
+        // Leave the terminal in the default colour for whatever comes next
+        if(sgr != null){
+            out.append(RESET);
+            glyphBytes += RESET.length;
+        }
+        lastFrameBytes = out.size() - start;
+        lastUncoalescedBytes = lastFrameBytes - glyphBytes + uncoalescedGlyphBytes;
+
+        int[] swap = previous;
+        previous = current;
+        current = swap;
+    }
+
+    private void drawAll(FrameBuffer out){
+        moveTo(out, top, 0);
+        for(int row = 0; row < height; row++){
+            for(int col = 0; col < width; col++){
+                drawGlyph(out, current[row * width + col]);
+            }
+            out.append(CLEAR_TO_END_OF_LINE); // clear whatever a wider frame left behind
+            if(row < height - 1) out.appendChar('\n');
+        }
+        lastCellsWritten = width * height;
+    }
+
+    private void drawChanges(FrameBuffer out){
+        int written = 0;
+        for(int row = 0; row < height; row++){
+            boolean inRun = false;
+            for(int col = 0; col < width; col++){
+                int i = row * width + col;
+                if(current[i] == previous[i]){
+                    inRun = false;
+                    continue;
+                }
+                // Consecutive changed cells share one cursor move
+                if(!inRun) moveTo(out, top + row, col);
+                drawGlyph(out, current[i]);
+                inRun = true;
+                written++;
+            }
+        }
+        lastCellsWritten = written;
+    }
+
+    private void drawGlyph(FrameBuffer out, int glyph){
+        int before = out.size();
+        if(coalesceColors){
+            byte[] color = VisualizedMap.GLYPH_SGR[glyph];
+            if(color != null && color != sgr){
+                out.append(color);
+                sgr = color;
+            }
+            out.append(VisualizedMap.GLYPH_TEXT[glyph]);
+        }else{
+            out.append(VisualizedMap.GLYPH_BYTES[glyph]);
+        }
+        glyphBytes += out.size() - before;
+        uncoalescedGlyphBytes += VisualizedMap.GLYPH_BYTES[glyph].length;
+    }
+
+    // Each cell is two terminal columns wide
+    private static void moveTo(FrameBuffer out, int screenRow, int col){
+        out.append(CSI).appendInt(screenRow).appendChar(';').appendInt(2 * col + 1).appendChar('H');
+    }
+
+    /**
+     * Invalidates on SIGWINCH where the JVM supports it. Looked up
+     * reflectively so the build does not depend on (or warn about) the
+     * internal sun.misc API; on platforms without it only viewport changes
+     * trigger a full redraw.
+     */
+    private void watchTerminalResize(){
+        try{
+            Class<?> signalClass = Class.forName("sun.misc.Signal");
+            Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+            Object handler = Proxy.newProxyInstance(handlerClass.getClassLoader(), new Class<?>[]{handlerClass},
+                (proxy, method, args) -> {
+                    switch(method.getName()){
+                        case "handle": invalidate(); return null;
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "equals": return proxy == args[0];
+                        default: return "TerminalRenderer resize handler";
+                    }
+                });
+            Object winch = signalClass.getConstructor(String.class).newInstance("WINCH");
+            signalClass.getMethod("handle", signalClass, handlerClass).invoke(null, winch, handler);
+        }catch(ReflectiveOperationException | RuntimeException | LinkageError e){
+            // No resize notifications on this platform
+        }
+    }
+}
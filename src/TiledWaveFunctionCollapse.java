@@ -0,0 +1,189 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Chunked wave function collapse for maps too large to solve as one grid.
+ *
+ * The map is cut into square tiles that are solved independently on a
+ * fork-join pool. Tiles do not see each other, so the cells along each
+ * seam may break the adjacency rules. Those seams are reconciled in two
+ * more parallel passes: first a band around every vertical seam, then a
+ * band around every horizontal seam (which also covers the crossings).
+ * Each band is re-solved with the cells just outside it fixed as context,
+ * so the result is consistent with its surroundings.
+ *
+ * Every region draws from its own seed, derived from the map seed and the
+ * region's index, so the output does not depend on thread scheduling.
+ *
+ * Dependencies:
+ * (JCL) ForkJoinPool.java, RecursiveAction.java
+ * WaveFunctionCollapse.java
+ */
+public class TiledWaveFunctionCollapse {
+    public static final int DEFAULT_TILE_SIZE = 128;
+
+    // Half-width of the band re-solved around each seam
+    static final int SEAM_RADIUS = 2;
+
+    private final int width, height;
+    private final char[] tiles;
+    private final int[][] support;
+    private final char border;
+    private final long seed;
+    private final int tileSize;
+    private final WaveFunctionCollapse.Stats stats = new WaveFunctionCollapse.Stats();
+
+    private final char[][] map;
+
+    private TiledWaveFunctionCollapse(int width, int height, char[] tiles, int[][] support,
+                                      char border, long seed, int tileSize) {
+        this.width = width;
+        this.height = height;
+        this.tiles = tiles;
+        this.support = support;
+        this.border = border;
+        this.seed = seed;
+        this.tileSize = tileSize;
+        this.map = new char[height][width];
+    }
+
+    /**
+     * Solves a width x height map whose outer ring is pinned to the border
+     * tile, as MapGenerator does for the monolithic solver.
+     * If stats is not null, the counts from every region are added to it.
+     */
+    public static char[][] solve(int width, int height, char[] tiles, int[][] support, char border,
+                                 long seed, int tileSize, ForkJoinPool pool, WaveFunctionCollapse.Stats stats) {
+        if (tileSize < 4 * SEAM_RADIUS) {
+            throw new IllegalArgumentException("Tile size must be at least " + (4 * SEAM_RADIUS));
+        }
+
+        TiledWaveFunctionCollapse solver = new TiledWaveFunctionCollapse(width, height, tiles, support, border, seed, tileSize);
+        int tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+
+        // Phase 1: every tile on its own
+        List<int[]> regions = new ArrayList<>();
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                int x0 = tx * tileSize;
+                int y0 = ty * tileSize;
+                regions.add(new int[]{x0, y0, Math.min(tileSize, width - x0), Math.min(tileSize, height - y0)});
+            }
+        }
+        pool.invoke(solver.new RegionTask(regions, 0, regions.size(), 1, false));
+
+        // Phase 2: bands across the vertical seams
+        regions.clear();
+        for (int tx = 1; tx < tilesX; tx++) {
+            int x0 = tx * tileSize - SEAM_RADIUS;
+            regions.add(new int[]{x0, 0, Math.min(2 * SEAM_RADIUS, width - x0), height});
+        }
+        pool.invoke(solver.new RegionTask(regions, 0, regions.size(), 2, true));
+
+        // Phase 3: bands across the horizontal seams, including the crossings
+        regions.clear();
+        for (int ty = 1; ty < tilesY; ty++) {
+            int y0 = ty * tileSize - SEAM_RADIUS;
+            regions.add(new int[]{0, y0, width, Math.min(2 * SEAM_RADIUS, height - y0)});
+        }
+        pool.invoke(solver.new RegionTask(regions, 0, regions.size(), 3, true));
+
+        if (stats != null) stats.add(solver.stats);
+        return solver.map;
+    }
+
+    // Splits a list of regions in half until each task solves one
+    private class RegionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<int[]> regions;
+        private final int lo, hi, phase;
+        private final boolean withContext;
+
+        RegionTask(List<int[]> regions, int lo, int hi, int phase, boolean withContext) {
+            this.regions = regions;
+            this.lo = lo;
+            this.hi = hi;
+            this.phase = phase;
+            this.withContext = withContext;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= 1) {
+                if (hi > lo) {
+                    int[] r = regions.get(lo);
+                    solveRegion(r[0], r[1], r[2], r[3], regionSeed(phase, lo), withContext);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new RegionTask(regions, lo, mid, phase, withContext),
+                      new RegionTask(regions, mid, hi, phase, withContext));
+        }
+    }
+
+    /**
+     * Solves the region [x0, x0 + w) x [y0, y0 + h) and writes it into the map.
+     * With context, the one-cell ring around the region is fixed to its
+     * current values so the region has to agree with them.
+     */
+    private void solveRegion(int x0, int y0, int w, int h, long regionSeed, boolean withContext) {
+        // Solver window: the region plus its context ring, clipped to the map
+        int left = withContext ? Math.max(0, x0 - 1) : x0;
+        int top = withContext ? Math.max(0, y0 - 1) : y0;
+        int right = withContext ? Math.min(width, x0 + w + 1) : x0 + w;
+        int bottom = withContext ? Math.min(height, y0 + h + 1) : y0 + h;
+
+        WaveFunctionCollapse wfc = new WaveFunctionCollapse(right - left, bottom - top, tiles, support, new Random(regionSeed));
+
+        // Map borders are pinned without propagating, as in the monolithic solver
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) {
+                if (isBorder(x, y)) wfc.pin(x - left, y - top, border);
+            }
+        }
+
+        // Everything else outside the region is fixed context
+        boolean consistent = true;
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) {
+                boolean inRegion = x >= x0 && x < x0 + w && y >= y0 && y < y0 + h;
+                if (!inRegion && !isBorder(x, y)) {
+                    consistent &= wfc.fix(x - left, y - top, map[y][x]);
+                }
+            }
+        }
+
+        WaveFunctionCollapse.Stats regionStats = wfc.stats;
+        if (consistent) {
+            wfc.run();
+            for (int y = y0; y < y0 + h; y++) {
+                for (int x = x0; x < x0 + w; x++) {
+                    map[y][x] = wfc.valueAt(x - left, y - top);
+                }
+            }
+        } else {
+            // The context cannot be satisfied; keep the region as it was
+            regionStats.contradictions++;
+        }
+
+        synchronized (stats) {
+            stats.add(regionStats);
+        }
+    }
+
+    private boolean isBorder(int x, int y) {
+        return x == 0 || y == 0 || x == width - 1 || y == height - 1;
+    }
+
+    // SplitMix64 over (seed, phase, index), so every region has its own stream
+    private long regionSeed(int phase, int index) {
+        long z = seed + ((long) phase << 32 | index) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -8,6 +8,7 @@
  *   m is the number of rows and n is the number of columns.
  * 
  * - 'x' represents the user's character/icon.
+ * - 'S' represents an enemy spawn point.
  * - '+' represents an empty point.
  * - '#' represents a wall. 
  * - ':' represents the goal.
@@ -15,10 +16,13 @@
  * 
  * - A variety of distinct symbols that will represent obstacles or power-ups
  * 
+ * - In streaming (endless) mode, map is a fixed-width window of chunks over an
+ *   infinite world. Chunks are generated ahead of the viewport and evicted
+ *   behind it, so memory stays constant however far the player travels.
  * 
  * Dependencies:
  * (JCL) Scanner.java, File.java, IOException.java
- * Portal.java, Player.java
+ * Portal.java, Player.java, MapGenerator.java, BinaryMapFile.java
  */
 
 import java.util.*;
@@ -36,12 +40,23 @@ public class VisualizedMap {
     public char prev = '+';  // to restore symbols
     public boolean gameWon = false;
     public boolean ctrlPressed = false;
+    public EntitySystem entities; // enemies from the map's spawn points; null when streaming
+    private volatile int version = 0; // bumped whenever a tile changes
     private StringBuilder mapBuffer = new StringBuilder();
 
     public static int viewportX = 0, viewportY = 0;
     public int VIEWPORT_WIDTH = 40;
     public int VIEWPORT_HEIGHT = 20;
 
+    // Streaming world: map holds chunks [firstChunk, firstChunk + windowChunks)
+    public static final int CHUNK_WIDTH = 64;
+    private boolean streaming = false;
+    private static final long ENTITY_SEED = 0x51171E41AL; // same enemy moves every run
+    private long worldSeed;
+    private String sourcePath; // file the map was loaded from; null when streaming
+    private int firstChunk = 0;
+    private int windowChunks = 0;
+
     private static final int[] DISTINCT_PORTAL_COLORS = {
         226,  // Bright Yellow
         51,   // Bright Cyan
@@ -54,13 +69,20 @@ public class VisualizedMap {
     };
     
     // Constructor initializing a map by reading from a file
-    public VisualizedMap(String path, int vWidth, int vHeight){
+    public VisualizedMap(String path, int vWidth, int vHeight) throws IOException {
         this.VIEWPORT_WIDTH = vWidth;
         this.VIEWPORT_HEIGHT = vHeight;
+        this.sourcePath = path;
 
         player = new Player();
         pairedPortals = new HashMap<>();
         HashMap<Character, Portal> pendingPortals = new HashMap<>();
+        List<int[]> spawnPoints = new ArrayList<>();
+
+        if(path.endsWith(BinaryMapFile.EXTENSION)){
+            loadBinary(path);
+            return;
+        }
 
         try(Scanner scanIn = new Scanner(new File(path))){
 
@@ -83,6 +105,9 @@ public class VisualizedMap {
                         icon_x = currCol;
                         icon_y = currRow;
                     }
+                    if(c == 'S'){
+                        spawnPoints.add(new int[]{currCol, currRow});
+                    }
 
                     // Load portal pairs
                     if(Character.isDigit(c)){
@@ -107,11 +132,55 @@ public class VisualizedMap {
                 // Initialize each row
                 map[currRow] = row;
             }
-        }catch(IOException e){
-            e.printStackTrace();
+            spawnEntities(spawnPoints);
+        }
+    }
+
+    // Binary maps carry their icon position and portal table, so nothing is scanned
+    private void loadBinary(String path) throws IOException {
+        BinaryMapFile file = BinaryMapFile.read(path);
+        map = file.tiles;
+        icon_x = file.iconX;
+        icon_y = file.iconY;
+        for(Portal[] pair : file.portalPairs){
+            pairedPortals.put(pair[0], pair[1]);
+            pairedPortals.put(pair[1], pair[0]);
+        }
+        spawnEntities(file.spawnPoints);
+    }
+
+    // One enemy per 'S' tile
+    private void spawnEntities(List<int[]> spawnPoints){
+        entities = new EntitySystem(map[0].length, map.length, ENTITY_SEED);
+        for(int[] point : spawnPoints){
+            entities.spawn(EntitySystem.ENEMY, point[0], point[1]);
         }
     }
 
+    // Constructor for an endless, lazily generated world of the given height
+    public VisualizedMap(long seed, int height, int vWidth, int vHeight){
+        this.VIEWPORT_WIDTH = vWidth;
+        this.VIEWPORT_HEIGHT = vHeight;
+
+        player = new Player();
+        pairedPortals = new HashMap<>();
+
+        streaming = true;
+        worldSeed = seed;
+
+        // Enough columns for a viewport on either side of the player plus a chunk of slack
+        windowChunks = (2 * vWidth + CHUNK_WIDTH) / CHUNK_WIDTH + 2;
+        map = new char[height][windowChunks * CHUNK_WIDTH];
+        for(int chunk = 0; chunk < windowChunks; chunk++){
+            MapGenerator.generateChunk(worldSeed, chunk, CHUNK_WIDTH, map, chunk * CHUNK_WIDTH);
+        }
+
+        // Start at the entrance of the first chunk
+        icon_x = 1;
+        icon_y = MapGenerator.seamPassageRow(worldSeed, 0, height);
+        map[icon_y][icon_x] = 'x';
+    }
+
     // -- Getters -- 
     public int getWidth(){
         return map[0].length;
@@ -120,6 +189,32 @@ public class VisualizedMap {
     public int getHeight(){
         return map.length;
     }
+
+    public Map<Portal, Portal> getPairedPortals(){
+        return Collections.unmodifiableMap(pairedPortals);
+    }
+
+    public boolean isStreaming(){
+        return streaming;
+    }
+
+    public String getSourcePath(){
+        return sourcePath;
+    }
+
+    public long getWorldSeed(){
+        return worldSeed;
+    }
+
+    // Changes whenever the rendered tiles may have changed
+    public int getVersion(){
+        return version;
+    }
+
+    // Column of the player in world coordinates (equals icon_x for fixed maps)
+    public int getWorldX(){
+        return firstChunk * CHUNK_WIDTH + icon_x;
+    }
     
     public void right(){
         synchronized(mapLock){
@@ -137,7 +232,9 @@ public class VisualizedMap {
                 // Move icon and save new tile
                 map[icon_y][++icon_x] = 'x';
                 prev = nextTile;
+                version++;
                 handleSpecialTile(prev);
+                streamChunks();
 
             }
         }
@@ -159,7 +256,9 @@ public class VisualizedMap {
                 // Move icon and save new tile
                 map[icon_y][--icon_x] = 'x';
                 prev = nextTile;
+                version++;
                 handleSpecialTile(prev);
+                streamChunks();
             }
         }
     }
@@ -180,6 +279,7 @@ public class VisualizedMap {
                 // Move icon and save new tile
                 map[--icon_y][icon_x] = 'x';
                 prev = nextTile;
+                version++;
                 handleSpecialTile(prev);
             }
         }
@@ -201,6 +301,7 @@ public class VisualizedMap {
                 // Move icon and save new tile
                 map[++icon_y][icon_x] = 'x';
                 prev = nextTile;
+                version++;
                 handleSpecialTile(prev);
             }
         }
@@ -243,19 +344,138 @@ public class VisualizedMap {
             // Move icon to outPortal graphically
             prev = map[outPortal.getY()][outPortal.getX()]; // save value of previous tile
             map[outPortal.getY()][outPortal.getX()] = 'x';
+            version++;
+        }
+    }
+
+    /**
+     * Slides the chunk window so there is always a viewport's worth of world
+     * on both sides of the player. Evicted chunks are regenerated identically
+     * from the world seed if the player walks back to them.
+     */
+    private void streamChunks(){
+        if(!streaming) return;
+        int windowWidth = map[0].length;
+
+        // Approaching the right edge: drop the leftmost chunk, generate a new one
+        while(icon_x + VIEWPORT_WIDTH >= windowWidth){
+            for(char[] row : map){
+                System.arraycopy(row, CHUNK_WIDTH, row, 0, windowWidth - CHUNK_WIDTH);
+            }
+            firstChunk++;
+            icon_x -= CHUNK_WIDTH;
+            MapGenerator.generateChunk(worldSeed, firstChunk + windowChunks - 1, CHUNK_WIDTH, map, windowWidth - CHUNK_WIDTH);
+        }
+
+        // Approaching the left edge: drop the rightmost chunk, regenerate the one behind
+        while(icon_x - VIEWPORT_WIDTH < 0 && firstChunk > 0){
+            for(char[] row : map){
+                System.arraycopy(row, 0, row, CHUNK_WIDTH, windowWidth - CHUNK_WIDTH);
+            }
+            firstChunk--;
+            icon_x += CHUNK_WIDTH;
+            MapGenerator.generateChunk(worldSeed, firstChunk, CHUNK_WIDTH, map, 0);
         }
     }
 
     // --------- Rendering Methods ---------
+
+    // Glyph ids: every tile renders as one of these, two columns wide
+    public static final int GLYPH_BLANK = 0;
+    public static final int GLYPH_EMPTY = 1;
+    public static final int GLYPH_WALL = 2;
+    public static final int GLYPH_GOAL = 3;
+    public static final int GLYPH_SPIKE = 4;
+    public static final int GLYPH_SPAWN = 5;
+    public static final int GLYPH_PLAYER = 6;
+    public static final int GLYPH_PLAYER_INVINCIBLE = 7;
+    public static final int GLYPH_ENEMY = 8;
+    public static final int GLYPH_PORTAL = 9; // + portal digit
+    public static final String[] GLYPHS = new String[GLYPH_PORTAL + 10];
+    public static final byte[][] GLYPH_BYTES = new byte[GLYPHS.length][]; // GLYPHS, pre-encoded
+
+    // The same glyphs split into a colour escape and plain text, for
+    // renderers that only switch colour when it changes. Each colour escape
+    // starts with a reset so bold never leaks from one glyph into the next;
+    // a null colour (blank) looks the same in any colour.
+    public static final byte[][] GLYPH_SGR = new byte[GLYPHS.length][];
+    public static final byte[][] GLYPH_TEXT = new byte[GLYPHS.length][];
+
+    static {
+        GLYPHS[GLYPH_BLANK] = "  ";
+        GLYPHS[GLYPH_EMPTY] = "\033[38;5;234m+ \033[0m";
+        GLYPHS[GLYPH_WALL] = "\033[38;5;255m#\033[0m ";
+        GLYPHS[GLYPH_GOAL] = "\033[38;5;226m:\033[0m ";
+        GLYPHS[GLYPH_SPIKE] = "\033[1;31m*\033[0m ";
+        GLYPHS[GLYPH_SPAWN] = "\033[38;5;46m+ \033[0m";
+        GLYPHS[GLYPH_PLAYER] = "\033[1;36mx\033[0m ";
+        GLYPHS[GLYPH_PLAYER_INVINCIBLE] = "\033[1;37mx\033[0m ";
+        GLYPHS[GLYPH_ENEMY] = "\033[1;38;5;201mE\033[0m ";
+        for(int digit = 0; digit < 10; digit++){
+            int colorCode = DISTINCT_PORTAL_COLORS[digit % DISTINCT_PORTAL_COLORS.length];
+            GLYPHS[GLYPH_PORTAL + digit] = "\033[38;5;" + colorCode + "m|\033[0m ";
+        }
+        // Glyphs sharing a colour share one escape array, so renderers can
+        // compare colours by reference
+        Map<String, byte[]> colors = new HashMap<>();
+        for(int glyph = 0; glyph < GLYPHS.length; glyph++){
+            GLYPH_BYTES[glyph] = FrameBuffer.ascii(GLYPHS[glyph]);
+
+            String glyphString = GLYPHS[glyph];
+            GLYPH_TEXT[glyph] = FrameBuffer.ascii(glyphString.replaceAll("\033\\[[0-9;]*m", ""));
+            if(glyphString.startsWith("\033[")){
+                String params = glyphString.substring(2, glyphString.indexOf('m'));
+                GLYPH_SGR[glyph] = colors.computeIfAbsent(params, p -> FrameBuffer.ascii("\033[0;" + p + "m"));
+            }
+        }
+    }
+
+    public int glyphAt(int x, int y){
+        char c = map[y][x];
+        if(Character.isDigit(c)) return GLYPH_PORTAL + (c - '0');
+        switch(c){
+            case 'x': return player.isInvincible() ? GLYPH_PLAYER_INVINCIBLE : GLYPH_PLAYER;
+            case '#': return GLYPH_WALL;
+            case ':': return GLYPH_GOAL;
+            case '*': return GLYPH_SPIKE;
+            case 'S': return GLYPH_SPAWN;
+            default: return GLYPH_EMPTY;
+        }
+    }
+
+    // Centers the viewport on the player, clamped to the map
+    private void updateViewport(){
+        streamChunks();
+        viewportX = Math.max(0, Math.min(icon_x - VIEWPORT_WIDTH/2, 
+                                        map[0].length - VIEWPORT_WIDTH));
+        viewportY = Math.max(0, Math.min(icon_y - VIEWPORT_HEIGHT/2,
+                                        map.length - VIEWPORT_HEIGHT));
+    }
+
+    /**
+     * Fills glyphs (VIEWPORT_WIDTH * VIEWPORT_HEIGHT, row by row) with the
+     * glyph id of every viewport cell; cells past the map edge are blank.
+     */
+    public void captureViewport(int[] glyphs){
+        synchronized(mapLock){
+            updateViewport();
+            for(int row = 0; row < VIEWPORT_HEIGHT; row++){
+                int y = viewportY + row;
+                for(int col = 0; col < VIEWPORT_WIDTH; col++){
+                    int x = viewportX + col;
+                    glyphs[row * VIEWPORT_WIDTH + col] = y < map.length && x < map[0].length ? glyphAt(x, y) : GLYPH_BLANK;
+                }
+            }
+            if(entities != null){
+                entities.overlay(glyphs, viewportX, viewportY, VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+            }
+        }
+    }
+
     public String toString(){
         synchronized(mapLock){
             mapBuffer.setLength(0); // Clear buffer
-
-            // Calculate viewport position centered on player
-            viewportX = Math.max(0, Math.min(icon_x - VIEWPORT_WIDTH/2, 
-                                            map[0].length - VIEWPORT_WIDTH));
-            viewportY = Math.max(0, Math.min(icon_y - VIEWPORT_HEIGHT/2,
-                                            map.length - VIEWPORT_HEIGHT));
+            updateViewport();
 
             int endRow = Math.min(map.length, viewportY + VIEWPORT_HEIGHT);
             int endCol = Math.min(map[0].length, viewportX + VIEWPORT_WIDTH);
@@ -271,32 +491,6 @@ public class VisualizedMap {
     }
 
     public void renderTile(int x, int y){
-        char c = map[y][x];
-        if(Character.isDigit(c)){
-            int colorNd = c - '0'; // parsing char to int with offset of 1 from 0
-            int colorCode = DISTINCT_PORTAL_COLORS[colorNd]; 
-            mapBuffer.append("\033[38;5;" + colorCode + "m|\033[0m ");
-        }else{
-            switch(c){
-            case 'x':
-                if(player.isInvincible()) mapBuffer.append("\033[1;37m" + c + "\033[0m ");
-                else mapBuffer.append("\033[1;36m" + c + "\033[0m ");
-                break;
-            case '#':
-                mapBuffer.append("\033[38;5;255m" + c + "\033[0m ");
-                break;
-            case ':':
-                mapBuffer.append("\033[38;5;226m" + c + "\033[0m ");
-                break;
-            case '*':
-                mapBuffer.append("\033[1;31m" + c + "\033[0m ");
-                break;
-            case 'S':
-                mapBuffer.append("\033[38;5;46m+ \033[0m");
-                break;
-            default:
-                mapBuffer.append("\033[38;5;234m+ \033[0m");
-            }
-        }
+        mapBuffer.append(GLYPHS[glyphAt(x, y)]);
     }
 }
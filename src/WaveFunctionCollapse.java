@@ -0,0 +1,456 @@
+import java.util.*;
+
+/**
+ * Wave function collapse solver over a rectangular grid of tiles.
+ *
+ * Every cell's domain is a bitmask over the tile set (bit i = tiles[i]), and
+ * the adjacency rules are compiled once into a support table: for each
+ * direction and each possible domain, the mask of tiles allowed next to it.
+ * Narrowing a neighbour is then a single AND, with no boxing or per-cell sets.
+ *
+ * Cells are also kept in an entropy index: one permutation of all cells,
+ * partitioned into contiguous buckets by entropy. A domain that loses tiles
+ * slides its cell down one bucket boundary per lost tile, so picking a
+ * minimum-entropy cell and counting the remaining ones are both O(1).
+ *
+ * Every domain change is recorded on a trail. When propagation empties a
+ * domain, the solver undoes the most recent decisions from the trail and
+ * bans the tile chosen by the oldest one undone. Repeated contradictions
+ * without progress double the jump, up to maxBacktrackDepth decisions;
+ * only past that does it fall back to resetting the whole grid.
+ *
+ * Dependencies:
+ * (JCL) Random.java, Map.java, Set.java
+ */
+public class WaveFunctionCollapse {
+    // Direction order matches the keys used by MapGenerator.VALID_NEIGHBORS
+    static final String[] DIRECTION_NAMES = {"down", "right", "up", "left"};
+    static final int[] DX = {0, 1, 0, -1};
+    static final int[] DY = {1, 0, -1, 0};
+
+    // Domains are stored as bytes, so at most 8 distinct tiles
+    static final int MAX_TILES = 8;
+
+    // Decisions undone per contradiction before giving up and restarting
+    public static final int DEFAULT_BACKTRACK_DEPTH = 64;
+
+    /**
+     * Per-run counters, so callers can see how hard a rule set was.
+     */
+    public static class Stats {
+        public int contradictions; // propagations that emptied a domain
+        public int backtracks;     // decisions undone from the trail
+        public int restarts;       // whole-grid resets
+
+        public void add(Stats other) {
+            contradictions += other.contradictions;
+            backtracks += other.backtracks;
+            restarts += other.restarts;
+        }
+
+        @Override
+        public String toString() {
+            return "contradictions: " + contradictions + ", backtracks: " + backtracks + ", restarts: " + restarts;
+        }
+    }
+
+    private final char[] tiles;
+    private final int[][] support;  // support[dir][domain] -> allowed neighbour mask
+    private final int allTiles;
+
+    final int width, height;
+    private final byte[] domains;
+    private final boolean[] pinned;
+    private final Random rand;
+
+    // Entropy index: bucket e is order[bucketStart[e] .. bucketStart[e + 1])
+    private final int[] order;
+    private final int[] position;   // position[cell] = index of cell in order
+    private final int[] bucketStart;
+
+    // Propagation worklist, reused across steps
+    private final int[] stack;
+    private final boolean[] queued;
+
+    // Trail of (cell, previous domain), undone newest-first when backtracking
+    private int[] trailCells = new int[1024];
+    private byte[] trailDomains = new byte[1024];
+    private int trailSize = 0;
+
+    // Decision stack: chosen cell and tile, and the trail size before the choice
+    private int[] decisionCells = new int[256];
+    private int[] decisionTiles = new int[256];
+    private int[] decisionMarks = new int[256];
+    private int decisionCount = 0;
+
+    private int maxBacktrackDepth = DEFAULT_BACKTRACK_DEPTH;
+    private int streak = 0;                       // contradictions since the last progress
+    private int lowWater = Integer.MAX_VALUE;     // fewest remaining cells seen at a contradiction
+    private int baseMark = 0;                     // trail size when run() started
+    public final Stats stats = new Stats();
+
+    public WaveFunctionCollapse(int width, int height, char[] tiles, int[][] support, Random rand) {
+        this.width = width;
+        this.height = height;
+        this.tiles = tiles;
+        this.support = support;
+        this.allTiles = (1 << tiles.length) - 1;
+        this.rand = rand;
+
+        int cells = width * height;
+        domains = new byte[cells];
+        pinned = new boolean[cells];
+        stack = new int[cells];
+        queued = new boolean[cells];
+        order = new int[cells];
+        position = new int[cells];
+        bucketStart = new int[tiles.length + 2];
+        Arrays.fill(domains, (byte) allTiles);
+        rebuildIndex();
+    }
+
+    /**
+     * Compiles the nested neighbour map into support[dir][domain], where
+     * domain ranges over every subset of tiles.
+     */
+    public static int[][] compileRules(char[] tiles, Map<Character, Map<String, Set<Character>>> rules) {
+        if (tiles.length > MAX_TILES) {
+            throw new IllegalArgumentException("At most " + MAX_TILES + " tiles are supported");
+        }
+
+        int[][] support = new int[DIRECTION_NAMES.length][1 << tiles.length];
+        for (int dir = 0; dir < DIRECTION_NAMES.length; dir++) {
+            // Per-tile masks first
+            int[] perTile = new int[tiles.length];
+            for (int t = 0; t < tiles.length; t++) {
+                Set<Character> allowed = rules.get(tiles[t]).get(DIRECTION_NAMES[dir]);
+                for (int n = 0; n < tiles.length; n++) {
+                    if (allowed.contains(tiles[n])) perTile[t] |= 1 << n;
+                }
+            }
+
+            // A domain allows the union of what each of its tiles allows
+            for (int domain = 1; domain < support[dir].length; domain++) {
+                int lowest = Integer.numberOfTrailingZeros(domain);
+                support[dir][domain] = support[dir][domain & (domain - 1)] | perTile[lowest];
+            }
+        }
+        return support;
+    }
+
+    /**
+     * Sets how many decisions a contradiction may undo before the grid is
+     * reset. Zero disables backtracking and restarts on every contradiction.
+     */
+    public void setMaxBacktrackDepth(int depth) {
+        this.maxBacktrackDepth = depth;
+    }
+
+    /**
+     * Fixes a cell to a value without propagating it to its neighbours.
+     * Pinned cells are never narrowed and survive a reset.
+     */
+    public void pin(int x, int y, char value) {
+        int cell = y * width + x;
+        assign(cell, 1 << tileIndex(value));
+        pinned[cell] = true;
+    }
+
+    /**
+     * Pins a cell and, unlike pin(), propagates it into its unpinned
+     * neighbours, so it acts as fixed context for the rest of the grid.
+     * Returns false if the context leaves some cell with no valid tile.
+     */
+    public boolean fix(int x, int y, char value) {
+        pin(x, y, value);
+        return propagateConstraints(y * width + x);
+    }
+
+    /**
+     * Runs the solver until every cell holds exactly one tile.
+     * On a contradiction recent decisions are backtracked; if that fails,
+     * the grid is rolled back to how it was when run() started.
+     */
+    public void run() {
+        baseMark = trailSize;
+        while (remainingCells() > 0) {
+            int cell = findMinEntropyCell();
+            if (cell < 0) break;
+
+            int tile = randomTile(domains[cell] & 0xFF);
+            pushDecision(cell, tile);
+            collapse(cell, tile);
+
+            if (!propagateConstraints(cell)) {
+                stats.contradictions++;
+                if (!backtrack()) {
+                    stats.restarts++;
+                    resetGrid();
+                }
+            }
+        }
+    }
+
+    // Number of cells that still have more than one possible tile
+    public int remainingCells() {
+        return domains.length - bucketStart[2];
+    }
+
+    public char valueAt(int x, int y) {
+        int domain = domains[y * width + x] & 0xFF;
+        return tiles[Integer.numberOfTrailingZeros(domain)];
+    }
+
+    public char[][] toMap() {
+        char[][] map = new char[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                map[y][x] = valueAt(x, y);
+            }
+        }
+        return map;
+    }
+
+    // Trail position to roll back to with undoTo()
+    int trailMark() {
+        return trailSize;
+    }
+
+    // Collapses (x, y) to a value on the trail, as a decision in run() would
+    boolean decide(int x, int y, char value) {
+        int cell = y * width + x;
+        collapse(cell, tileIndex(value));
+        return propagateConstraints(cell);
+    }
+
+    void undoTo(int mark) {
+        undoTrail(mark);
+    }
+
+    // Bitmask of the tiles still possible at (x, y)
+    int domainAt(int x, int y) {
+        return domains[y * width + x] & 0xFF;
+    }
+
+    /**
+     * Checks the entropy index against the domains: order and position are
+     * inverse permutations, and bucket e holds exactly the cells with e
+     * possible tiles. For tests; O(cells).
+     */
+    boolean indexIsConsistent() {
+        if (bucketStart[0] != 0 || bucketStart[bucketStart.length - 1] != domains.length) return false;
+        for (int e = 0; e + 1 < bucketStart.length; e++) {
+            if (bucketStart[e] > bucketStart[e + 1]) return false;
+            for (int slot = bucketStart[e]; slot < bucketStart[e + 1]; slot++) {
+                int cell = order[slot];
+                if (position[cell] != slot || Integer.bitCount(domains[cell] & 0xFF) != e) return false;
+            }
+        }
+        return true;
+    }
+
+    private int tileIndex(char value) {
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] == value) return i;
+        }
+        throw new IllegalArgumentException("Unknown tile: " + value);
+    }
+
+    private void collapse(int cell, int tile) {
+        setDomain(cell, 1 << tile);
+    }
+
+    // Changes a cell's domain and records the old one on the trail
+    private void setDomain(int cell, int domain) {
+        if (trailSize == trailCells.length) {
+            trailCells = Arrays.copyOf(trailCells, trailSize * 2);
+            trailDomains = Arrays.copyOf(trailDomains, trailSize * 2);
+        }
+        trailCells[trailSize] = cell;
+        trailDomains[trailSize] = domains[cell];
+        trailSize++;
+
+        assign(cell, domain);
+    }
+
+    /**
+     * Changes a cell's domain and moves it across the entropy index,
+     * one bucket boundary per tile gained or lost.
+     */
+    private void assign(int cell, int domain) {
+        int entropy = Integer.bitCount(domains[cell] & 0xFF);
+        int target = Integer.bitCount(domain);
+        domains[cell] = (byte) domain;
+
+        // Shrinking: swap to the front of the bucket, then shift the boundary past it
+        while (entropy > target) {
+            swapInOrder(cell, bucketStart[entropy]);
+            bucketStart[entropy]++;
+            entropy--;
+        }
+
+        // Growing: swap to the back of the bucket, then shift the boundary before it
+        while (entropy < target) {
+            swapInOrder(cell, bucketStart[entropy + 1] - 1);
+            bucketStart[entropy + 1]--;
+            entropy++;
+        }
+    }
+
+    private void swapInOrder(int cell, int slot) {
+        int displaced = order[slot];
+        int from = position[cell];
+
+        order[from] = displaced;
+        position[displaced] = from;
+        order[slot] = cell;
+        position[cell] = slot;
+    }
+
+    private void pushDecision(int cell, int tile) {
+        if (decisionCount == decisionCells.length) {
+            decisionCells = Arrays.copyOf(decisionCells, decisionCount * 2);
+            decisionTiles = Arrays.copyOf(decisionTiles, decisionCount * 2);
+            decisionMarks = Arrays.copyOf(decisionMarks, decisionCount * 2);
+        }
+        decisionCells[decisionCount] = cell;
+        decisionTiles[decisionCount] = tile;
+        decisionMarks[decisionCount] = trailSize;
+        decisionCount++;
+    }
+
+    /**
+     * Undoes the newest 2^(streak-1) decisions and bans the tile the oldest
+     * of them chose. If the banned domain still fails, keeps undoing one
+     * decision at a time. The ban is recorded under the previous decision,
+     * so undoing that one lifts it again.
+     * Returns false once the jump would exceed maxBacktrackDepth.
+     */
+    private boolean backtrack() {
+        // Reaching deeper than ever before counts as progress
+        if (remainingCells() < lowWater) {
+            lowWater = remainingCells();
+            streak = 0;
+        }
+        streak++;
+
+        int jump = streak > 30 ? Integer.MAX_VALUE : 1 << (streak - 1);
+        if (jump > maxBacktrackDepth) return false;
+
+        for (int undone = 0; decisionCount > 0 && undone < maxBacktrackDepth; undone++) {
+            decisionCount--;
+            int cell = decisionCells[decisionCount];
+            int tile = decisionTiles[decisionCount];
+            undoTrail(decisionMarks[decisionCount]);
+            stats.backtracks++;
+
+            if (undone + 1 < jump) continue;
+
+            int remaining = (domains[cell] & 0xFF) & ~(1 << tile);
+            if (remaining == 0) continue;
+
+            setDomain(cell, remaining);
+            if (propagateConstraints(cell)) return true;
+            stats.contradictions++;
+        }
+        return false;
+    }
+
+    private void undoTrail(int mark) {
+        while (trailSize > mark) {
+            trailSize--;
+            assign(trailCells[trailSize], trailDomains[trailSize] & 0xFF);
+        }
+    }
+
+    // Counting sort of every cell into its entropy bucket
+    private void rebuildIndex() {
+        Arrays.fill(bucketStart, 0);
+        for (byte domain : domains) {
+            bucketStart[Integer.bitCount(domain & 0xFF) + 1]++;
+        }
+        for (int e = 1; e < bucketStart.length; e++) {
+            bucketStart[e] += bucketStart[e - 1];
+        }
+
+        int[] next = bucketStart.clone();
+        for (int cell = 0; cell < domains.length; cell++) {
+            int slot = next[Integer.bitCount(domains[cell] & 0xFF)]++;
+            order[slot] = cell;
+            position[cell] = slot;
+        }
+    }
+
+    // Uniformly picks one of the set bits of the domain
+    private int randomTile(int domain) {
+        int skip = rand.nextInt(Integer.bitCount(domain));
+        for (int i = 0; i < skip; i++) {
+            domain &= domain - 1;
+        }
+        return Integer.numberOfTrailingZeros(domain);
+    }
+
+    /**
+     * Arc-consistency pass starting from a freshly collapsed cell.
+     * Returns false if some cell's domain became empty.
+     */
+    private boolean propagateConstraints(int start) {
+        int top = 0;
+        stack[top++] = start;
+        queued[start] = true;
+
+        while (top > 0) {
+            int cell = stack[--top];
+            queued[cell] = false;
+            int x = cell % width;
+            int y = cell / width;
+            int domain = domains[cell] & 0xFF;
+
+            for (int dir = 0; dir < DX.length; dir++) {
+                int nx = x + DX[dir];
+                int ny = y + DY[dir];
+                if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+
+                int neighbor = ny * width + nx;
+                int before = domains[neighbor] & 0xFF;
+                // Pinned cells are left alone
+                if (pinned[neighbor]) continue;
+
+                int after = before & support[dir][domain];
+                if (after == before) continue;
+
+                setDomain(neighbor, after);
+                if (after == 0) {
+                    // Leave the worklist clean for the next pass
+                    while (top > 0) queued[stack[--top]] = false;
+                    return false;
+                }
+
+                if (!queued[neighbor]) {
+                    queued[neighbor] = true;
+                    stack[top++] = neighbor;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Picks uniformly among the uncollapsed cells of lowest entropy
+    private int findMinEntropyCell() {
+        for (int e = 2; e <= tiles.length; e++) {
+            int size = bucketStart[e + 1] - bucketStart[e];
+            if (size > 0) {
+                return order[bucketStart[e] + rand.nextInt(size)];
+            }
+        }
+        return -1;
+    }
+
+    // Rolls back every change made since run() started; pins and fixed context stay
+    private void resetGrid() {
+        undoTrail(baseMark);
+        decisionCount = 0;
+        streak = 0;
+        lowWater = Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,88 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * BinaryMapFile: text to binary and back keeps every field, and both
+ * formats load into the same VisualizedMap.
+ */
+class BinaryMapFileTest {
+    @TempDir
+    Path dir;
+
+    // A generated map with portals and spawn points, saved as text
+    String textMap(String name) throws IOException {
+        Path path = dir.resolve(name);
+        Files.write(path, MapGenerator.generateMap(60, 40, 11L, 200, null).getBytes());
+        return path.toString();
+    }
+
+    @Test
+    void writeThenReadKeepsEveryField() throws IOException {
+        String text = textMap("map1.txt");
+        BinaryMapFile parsed = BinaryMapFile.parseText(text);
+        assertFalse(parsed.portalPairs.isEmpty());
+        assertFalse(parsed.spawnPoints.isEmpty());
+
+        BinaryMapFile.convert(text);
+        BinaryMapFile read = BinaryMapFile.read(BinaryMapFile.binaryPathFor(text));
+
+        assertEquals(parsed.description, read.description);
+        assertArrayEquals(parsed.tiles, read.tiles);
+        assertEquals(parsed.iconX, read.iconX);
+        assertEquals(parsed.iconY, read.iconY);
+        assertEquals(parsed.portalPairs.size(), read.portalPairs.size());
+        for(int i = 0; i < parsed.portalPairs.size(); i++){
+            assertArrayEquals(parsed.portalPairs.get(i), read.portalPairs.get(i));
+        }
+        assertEquals(parsed.spawnPoints.size(), read.spawnPoints.size());
+        for(int i = 0; i < parsed.spawnPoints.size(); i++){
+            assertArrayEquals(parsed.spawnPoints.get(i), read.spawnPoints.get(i));
+        }
+    }
+
+    @Test
+    void textAndBinaryLoadTheSameMap() throws IOException {
+        String text = textMap("map2.txt");
+        BinaryMapFile.convert(text);
+        VisualizedMap fromText = new VisualizedMap(text, 40, 20);
+        VisualizedMap fromBinary = new VisualizedMap(BinaryMapFile.binaryPathFor(text), 40, 20);
+
+        assertArrayEquals(fromText.map, fromBinary.map);
+        assertEquals(fromText.icon_x, fromBinary.icon_x);
+        assertEquals(fromText.icon_y, fromBinary.icon_y);
+        Map<Portal, Portal> portals = fromText.getPairedPortals();
+        assertEquals(portals, fromBinary.getPairedPortals());
+        assertEquals(fromText.entities.getCount(), fromBinary.entities.getCount());
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path path = dir.resolve("map3.bin");
+        Files.write(path, "not a map".getBytes());
+        assertThrows(IOException.class, () -> BinaryMapFile.read(path.toString()));
+        assertThrows(IOException.class, () -> new VisualizedMap(path.toString(), 40, 20));
+    }
+
+    @Test
+    void staleBinaryCopiesAreNotUsed() throws IOException {
+        String text = textMap("map4.txt");
+        BinaryMapFile.convert(text);
+        File textFile = new File(text);
+        File binary = new File(BinaryMapFile.binaryPathFor(text));
+
+        assertTrue(binary.setLastModified(textFile.lastModified()));
+        assertTrue(BinaryMapFile.isUsableFor(binary, textFile));
+        assertTrue(textFile.setLastModified(binary.lastModified() + 2000));
+        assertFalse(BinaryMapFile.isUsableFor(binary, textFile));
+        assertTrue(textFile.delete());
+        assertTrue(BinaryMapFile.isUsableFor(binary, textFile));
+    }
+}
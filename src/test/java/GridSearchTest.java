@@ -0,0 +1,145 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * GridSearch: BFS distances, A* against a plain Dijkstra with the
+ * wall-clearing costs MapGenerator uses, and buffers reused across grids.
+ */
+class GridSearchTest {
+    private static final GridSearch.TileFilter NOT_WALL = tile -> tile != '#';
+
+    // Walled border around a random interior of walls and floor
+    static char[][] randomMap(int width, int height, double walls, Random rand){
+        char[][] map = new char[height][width];
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                boolean border = x == 0 || y == 0 || x == width - 1 || y == height - 1;
+                map[y][x] = border || rand.nextDouble() < walls ? '#' : ' ';
+            }
+        }
+        return map;
+    }
+
+    // Textbook Dijkstra with a priority queue of {cost, cell}
+    static int dijkstra(char[][] map, int sx, int sy, int tx, int ty, GridSearch.TileCost cost){
+        int width = map[0].length;
+        int[] best = new int[width * map.length];
+        Arrays.fill(best, Integer.MAX_VALUE);
+        PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> Integer.compare(a[0], b[0]));
+        best[sy * width + sx] = 0;
+        queue.add(new int[]{0, sy * width + sx});
+
+        while(!queue.isEmpty()){
+            int[] entry = queue.poll();
+            int cell = entry[1];
+            if(entry[0] > best[cell]) continue;
+            if(cell == ty * width + tx) return entry[0];
+
+            for(int dir = 0; dir < 4; dir++){
+                int nx = cell % width + GridSearch.DX[dir];
+                int ny = cell / width + GridSearch.DY[dir];
+                if(nx < 0 || ny < 0 || nx >= width || ny >= map.length) continue;
+                int step = cost.cost(map, nx, ny);
+                if(step < 0) continue;
+                int g = entry[0] + step;
+                if(g < best[ny * width + nx]){
+                    best[ny * width + nx] = g;
+                    queue.add(new int[]{g, ny * width + nx});
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    void bfsOnOpenFloorGivesManhattanDistances(){
+        char[][] map = randomMap(12, 9, 0, new Random(1));
+        GridSearch search = new GridSearch();
+        assertEquals(-1, search.bfs(map, 3, 4, -1, NOT_WALL));
+
+        for(int y = 1; y < 8; y++){
+            for(int x = 1; x < 11; x++){
+                assertEquals(Math.abs(x - 3) + Math.abs(y - 4), search.distance(search.pack(x, y)));
+            }
+        }
+        assertEquals(-1, search.distance(search.pack(0, 0)));
+    }
+
+    @Test
+    void bfsGoesAroundWallsAndReportsUnreachableTargets(){
+        char[][] map = {
+            "#######".toCharArray(),
+            "# #   #".toCharArray(),
+            "# # # #".toCharArray(),
+            "#   # #".toCharArray(),
+            "#######".toCharArray(),
+            "# #####".toCharArray(),
+        };
+        int width = map[0].length;
+        GridSearch search = new GridSearch();
+        assertEquals(10, search.bfs(map, 1, 1, 3 * width + 5, NOT_WALL));
+        assertEquals(-1, search.bfs(map, 1, 1, 5 * width + 1, NOT_WALL));
+        assertFalse(search.isVisited(5 * width + 1));
+    }
+
+    @Test
+    void astarMatchesDijkstraWithClearingCosts(){
+        Random rand = new Random(2);
+        GridSearch search = new GridSearch();
+        for(int round = 0; round < 200; round++){
+            int width = 5 + rand.nextInt(40), height = 5 + rand.nextInt(40);
+            char[][] map = randomMap(width, height, rand.nextDouble() * 0.6, rand);
+            int sx = 1 + rand.nextInt(width - 2), sy = 1 + rand.nextInt(height - 2);
+            int tx = 1 + rand.nextInt(width - 2), ty = 1 + rand.nextInt(height - 2);
+
+            int expected = dijkstra(map, sx, sy, tx, ty, MapGenerator.CLEAR_COST);
+            int found = search.astar(map, sx, sy, tx, ty, MapGenerator.CLEAR_COST);
+            assertEquals(expected, found, "round " + round);
+
+            // The parent chain is a real path whose steps add up to the cost
+            int start = search.pack(sx, sy), total = 0;
+            for(int cell = search.pack(tx, ty); cell != start; cell = search.parent(cell)){
+                int x = search.x(cell), y = search.y(cell), back = search.parent(cell);
+                assertEquals(1, Math.abs(x - search.x(back)) + Math.abs(y - search.y(back)));
+                assertTrue(x > 0 && y > 0 && x < width - 1 && y < height - 1, "round " + round + " left the interior");
+                total += MapGenerator.CLEAR_COST.cost(map, x, y);
+            }
+            assertEquals(found, total, "round " + round);
+        }
+    }
+
+    @Test
+    void astarCutsThroughInnerWallsButNeverTheBorder(){
+        char[][] map = {
+            "#####".toCharArray(),
+            "# # #".toCharArray(),
+            "# # #".toCharArray(),
+            "#####".toCharArray(),
+        };
+        GridSearch search = new GridSearch();
+        assertEquals(1 + 16 + 1, search.astar(map, 1, 1, 3, 2, MapGenerator.CLEAR_COST));
+        assertEquals(0, search.astar(map, 1, 1, 1, 1, MapGenerator.CLEAR_COST));
+        assertEquals(-1, search.astar(map, 1, 1, 0, 1, MapGenerator.CLEAR_COST));
+    }
+
+    @Test
+    void searchesOnSmallerAndLargerGridsDoNotSeeEachOther(){
+        GridSearch search = new GridSearch();
+        char[][] large = randomMap(30, 30, 0, new Random(3));
+        char[][] small = randomMap(6, 4, 0, new Random(3));
+
+        search.bfs(large, 1, 1, -1, NOT_WALL);
+        search.bfs(small, 1, 1, -1, NOT_WALL);
+        assertEquals(6, search.getWidth());
+        assertEquals(4, search.distance(search.pack(4, 2)));
+        assertFalse(search.isVisited(search.pack(0, 2)));
+
+        search.bfs(large, 28, 28, -1, NOT_WALL);
+        assertEquals(54, search.distance(search.pack(1, 1)));
+    }
+}
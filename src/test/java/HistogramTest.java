@@ -0,0 +1,103 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Histogram: where the log-linear bucket boundaries fall, and percentiles
+ * against an exact sort of the same samples.
+ */
+class HistogramTest {
+    @Test
+    void smallValuesGetABucketEach(){
+        for(int value = 0; value < 16; value++){
+            assertEquals(value, Histogram.bucket(value));
+            assertEquals(value, Histogram.bucketTop(value));
+        }
+    }
+
+    @Test
+    void eachPowerOfTwoSplitsIntoSixteenEqualBuckets(){
+        for(int msb = 4; msb < 63; msb++){
+            long width = 1L << (msb - 4);
+            for(int sub = 0; sub < 16; sub++){
+                long lower = (16L + sub) << (msb - 4);
+                long top = lower + width - 1;
+                int index = Histogram.bucket(lower);
+                assertEquals(index, Histogram.bucket(top), "top of " + lower);
+                assertEquals(top, Histogram.bucketTop(index));
+                assertEquals(index - 1, Histogram.bucket(lower - 1), "below " + lower);
+            }
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.bucketTop(Histogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void bucketTopIsWithinASixteenthOfTheValue(){
+        Random rand = new Random(1);
+        for(int i = 0; i < 100_000; i++){
+            long value = (rand.nextLong() >>> 1) >>> rand.nextInt(63);
+            long top = Histogram.bucketTop(Histogram.bucket(value));
+            assertTrue(top >= value && top - value <= value / 16, value + " -> " + top);
+        }
+    }
+
+    @Test
+    void percentilesOfSmallValuesAreExact(){
+        Histogram histogram = new Histogram();
+        for(int value = 10; value >= 1; value--){
+            histogram.record(value);
+        }
+        assertEquals(10, histogram.getCount());
+        assertEquals(1, histogram.percentile(0));
+        assertEquals(5, histogram.percentile(0.5));
+        assertEquals(9, histogram.percentile(0.9));
+        assertEquals(10, histogram.percentile(1));
+        assertEquals(5.5, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    void percentilesMatchASortWithinBucketError(){
+        Random rand = new Random(2);
+        long[] samples = new long[10_000];
+        Histogram histogram = new Histogram();
+        for(int i = 0; i < samples.length; i++){
+            samples[i] = (long) Math.exp(rand.nextGaussian() * 2 + 14);
+            histogram.record(samples[i]);
+        }
+        Arrays.sort(samples);
+
+        for(double fraction : new double[]{0.01, 0.25, 0.5, 0.9, 0.99, 0.999}){
+            long exact = samples[(int) Math.ceil(fraction * samples.length) - 1];
+            long reported = histogram.percentile(fraction);
+            assertTrue(reported >= exact && reported - exact <= exact / 16, fraction + ": " + reported + " vs " + exact);
+        }
+        assertEquals(samples[samples.length - 1], histogram.percentile(1));
+        assertEquals(samples[samples.length - 1], histogram.getMax());
+    }
+
+    @Test
+    void percentilesNeverExceedTheMax(){
+        Histogram histogram = new Histogram();
+        histogram.record(1000);
+        assertEquals(1023, Histogram.bucketTop(Histogram.bucket(1000)));
+        assertEquals(1000, histogram.percentile(0.5));
+    }
+
+    @Test
+    void negativeValuesCountAsZeroAndResetClears(){
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.percentile(0.5));
+        histogram.record(-5);
+        assertEquals(0, histogram.percentile(1));
+        assertEquals(1, histogram.getCount());
+
+        histogram.record(40);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.percentile(0.99));
+    }
+}
@@ -0,0 +1,115 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * InputLog: what the Recorder saves reads back tick for tick, and a
+ * replayed session ends where the recorded one did.
+ */
+class InputLogTest {
+    @TempDir
+    Path dir;
+
+    String mapFile() throws IOException {
+        Path path = dir.resolve("map1.txt");
+        Files.write(path, MapGenerator.generateMap(40, 30, 5L, 400, null).getBytes());
+        return path.toString();
+    }
+
+    // Changes keys after longer and longer gaps, so the gaps need multi-byte varints
+    static class SlowKeys implements InputSource {
+        private long tick = 0;
+        private int changes = 0;
+        private int keys = 0, pressed = 0;
+
+        public int poll(){
+            pressed = 0;
+            if(tick++ == 50L * changes * changes){
+                changes++;
+                int next = changes * 37 % 128;
+                pressed = next & ~keys;
+                keys = next;
+            }
+            return keys;
+        }
+
+        public int pressed(){
+            return pressed;
+        }
+    }
+
+    @Test
+    void replayGivesBackEveryRecordedTick() throws IOException {
+        VisualizedMap map = new VisualizedMap(mapFile(), 40, 20);
+        InputLog.Recorder recorder = new InputLog.Recorder(new SlowKeys());
+        int[] keys = new int[50_000], pressed = new int[keys.length];
+        for(int tick = 0; tick < keys.length; tick++){
+            keys[tick] = recorder.poll();
+            pressed[tick] = recorder.pressed();
+        }
+        File file = dir.resolve("session" + InputLog.EXTENSION).toFile();
+        recorder.save(file, map, 60);
+
+        InputLog log = InputLog.read(file);
+        assertEquals(60, log.ticksPerSecond);
+        assertEquals(keys.length, log.ticks);
+        assertEquals(new File(map.getSourcePath()).getAbsolutePath(), log.mapPath);
+        assertEquals(40, log.viewportWidth);
+        assertEquals(20, log.viewportHeight);
+        assertTrue(log.matches(map));
+
+        InputLog.Replay replay = log.replay();
+        for(int tick = 0; tick < keys.length; tick++){
+            assertFalse(replay.isExhausted());
+            assertEquals(keys[tick], replay.poll(), "tick " + tick);
+            assertEquals(pressed[tick], replay.pressed(), "tick " + tick);
+        }
+        assertTrue(replay.isExhausted());
+    }
+
+    @Test
+    void recordedGameReplaysToTheSameEnd() throws IOException {
+        String path = mapFile();
+        for(long seed = 1; seed <= 5; seed++){
+            VisualizedMap map = new VisualizedMap(path, 40, 20);
+            InputLog.Recorder recorder = new InputLog.Recorder(new Simulation.Wanderer(seed));
+            long ticks = new Game(map, recorder).simulate(20_000);
+            File file = dir.resolve("session" + seed + InputLog.EXTENSION).toFile();
+            recorder.save(file, map, Game.DEFAULT_FPS);
+
+            InputLog log = InputLog.read(file);
+            VisualizedMap replayed = log.openMap();
+            assertEquals(ticks, new Game(replayed, log.replay()).simulate(Long.MAX_VALUE), "seed " + seed);
+            assertTrue(log.matches(replayed), "seed " + seed);
+        }
+    }
+
+    @Test
+    void endlessSessionReplaysToTheSameEnd() throws IOException {
+        VisualizedMap map = new VisualizedMap(12L, Game.ENDLESS_HEIGHT, 40, 20);
+        InputLog.Recorder recorder = new InputLog.Recorder(new Simulation.Wanderer(12));
+        new Game(map, recorder).simulate(3_000);
+        File file = dir.resolve("endless" + InputLog.EXTENSION).toFile();
+        recorder.save(file, map, Game.DEFAULT_FPS);
+
+        InputLog log = InputLog.read(file);
+        assertEquals("", log.mapPath);
+        assertEquals(12L, log.worldSeed);
+        VisualizedMap replayed = log.openMap();
+        new Game(replayed, log.replay()).simulate(Long.MAX_VALUE);
+        assertTrue(log.matches(replayed));
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path path = dir.resolve("notes" + InputLog.EXTENSION);
+        Files.write(path, "not a session".getBytes());
+        assertThrows(IOException.class, () -> InputLog.read(path.toFile()));
+    }
+}
@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * KeyInput: taps between polls, auto-repeat, the ring wrapping around many
+ * times, overflow resync, and a real producer thread.
+ */
+class KeyInputTest {
+    private static final int[] KEYS = {KeyInput.UP, KeyInput.LEFT, KeyInput.DOWN, KeyInput.RIGHT};
+
+    @Test
+    void tapBetweenPollsIsSeenOnce(){
+        KeyInput input = new KeyInput();
+        input.press(KeyInput.UP);
+        input.release(KeyInput.UP);
+        assertEquals(KeyInput.UP, input.poll());
+        assertEquals(KeyInput.UP, input.pressed());
+        assertEquals(0, input.poll());
+        assertEquals(0, input.pressed());
+    }
+
+    @Test
+    void heldKeyStaysDownButIsPressedOnce(){
+        KeyInput input = new KeyInput();
+        input.press(KeyInput.LEFT);
+        input.press(KeyInput.LEFT); // auto-repeat
+        assertEquals(KeyInput.LEFT, input.poll());
+        assertEquals(KeyInput.LEFT, input.pressed());
+        assertEquals(KeyInput.LEFT, input.poll());
+        assertEquals(0, input.pressed());
+
+        input.release(KeyInput.LEFT);
+        assertEquals(0, input.poll());
+        assertEquals(0, input.held());
+    }
+
+    @Test
+    void ringWrapsAroundWithoutLosingEvents(){
+        KeyInput input = new KeyInput();
+        Random rand = new Random(1);
+        int down = 0;
+        for(int round = 0; round < 2000; round++){
+            // Under a full ring per round, so nothing overflows; rounds add up to many laps
+            int pressed = 0;
+            for(int i = rand.nextInt(KeyInput.CAPACITY); i > 0; i--){
+                int key = KEYS[rand.nextInt(KEYS.length)];
+                if((down & key) != 0){
+                    input.release(key);
+                    down &= ~key;
+                }else{
+                    input.press(key);
+                    down |= key;
+                    pressed |= key;
+                }
+            }
+            // Keys still down plus taps; a key held from last round and let go was already seen
+            assertEquals(down | pressed, input.poll(), "round " + round);
+            assertEquals(pressed, input.pressed(), "round " + round);
+            assertEquals(down, input.held());
+        }
+    }
+
+    @Test
+    void overflowResyncsFromHeldKeys(){
+        KeyInput input = new KeyInput();
+        for(int i = 0; i < KeyInput.CAPACITY; i++){
+            input.press(KeyInput.DOWN);
+            input.release(KeyInput.DOWN);
+        }
+        input.press(KeyInput.RIGHT);
+        assertEquals(KeyInput.RIGHT, input.held());
+
+        // The RIGHT press was dropped from the full ring, but held still has it
+        assertEquals(KeyInput.DOWN | KeyInput.RIGHT, input.poll());
+        assertEquals(KeyInput.RIGHT, input.poll());
+
+        input.release(KeyInput.RIGHT);
+        assertEquals(0, input.poll());
+    }
+
+    @Test
+    void consumerCatchesUpWithAProducerThread() throws InterruptedException {
+        KeyInput input = new KeyInput();
+        Thread producer = new Thread(() -> {
+            Random rand = new Random(2);
+            for(int i = 0; i < 1_000_000; i++){
+                int key = KEYS[rand.nextInt(KEYS.length)];
+                if((input.held() & key) != 0) input.release(key);
+                else input.press(key);
+            }
+        });
+        producer.start();
+        while(producer.isAlive()){
+            input.poll();
+        }
+        producer.join();
+
+        // Whatever was dropped on overflow, the last poll agrees with the keys down
+        int held = input.held();
+        input.poll();
+        assertEquals(held, input.poll());
+    }
+}
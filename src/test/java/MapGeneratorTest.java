@@ -0,0 +1,77 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Whole-map checks on MapGenerator.generateMap: reproducible from the
+ * seed, walled in, one player and one goal the player can walk to.
+ */
+class MapGeneratorTest {
+    private static final GridSearch.TileFilter NOT_WALL = tile -> tile != '#';
+
+    // Rows of a generated map, without the description and size lines
+    static char[][] tiles(String mapContent){
+        String[] lines = mapContent.split("\n");
+        int height = Integer.parseInt(lines[1].trim());
+        char[][] map = new char[height][];
+        for(int y = 0; y < height; y++){
+            map[y] = lines[y + 3].toCharArray();
+        }
+        return map;
+    }
+
+    static int count(char[][] map, char tile){
+        int n = 0;
+        for(char[] row : map){
+            for(char c : row){
+                if(c == tile) n++;
+            }
+        }
+        return n;
+    }
+
+    @Test
+    void sameSeedGivesSameMap(){
+        assertEquals(MapGenerator.generateMap(60, 40, 7L, null), MapGenerator.generateMap(60, 40, 7L, null));
+        assertNotEquals(MapGenerator.generateMap(60, 40, 7L, null), MapGenerator.generateMap(60, 40, 8L, null));
+    }
+
+    @Test
+    void mapIsWalledInWithOnePlayerAndOneReachableGoal(){
+        for(long seed = 0; seed < 20; seed++){
+            String content = MapGenerator.generateMap(80, 60, seed, null);
+            assertTrue(content.contains("(seed " + seed + ")"), "seed is recorded in the description");
+
+            char[][] map = tiles(content);
+            assertEquals(60, map.length);
+            for(int y = 0; y < map.length; y++){
+                assertEquals(80, map[y].length);
+                assertEquals('#', map[y][0]);
+                assertEquals('#', map[y][79]);
+            }
+            for(int x = 0; x < 80; x++){
+                assertEquals('#', map[0][x]);
+                assertEquals('#', map[59][x]);
+            }
+            assertEquals(1, count(map, 'x'), "seed " + seed);
+            assertEquals(1, count(map, ':'), "seed " + seed);
+
+            int px = -1, py = -1, gx = -1, gy = -1;
+            for(int y = 0; y < map.length; y++){
+                for(int x = 0; x < map[y].length; x++){
+                    if(map[y][x] == 'x'){ px = x; py = y; }
+                    if(map[y][x] == ':'){ gx = x; gy = y; }
+                }
+            }
+            GridSearch search = new GridSearch();
+            int distance = search.bfs(map, px, py, gy * 80 + gx, NOT_WALL);
+            assertTrue(distance > 0, "goal reachable on seed " + seed);
+        }
+    }
+
+    @Test
+    void spawnAreaZeroPlacesNoSpawnPoints(){
+        assertEquals(0, count(tiles(MapGenerator.generateMap(120, 120, 3L, 0, null)), 'S'));
+        assertEquals(120 * 120 / 2000, count(tiles(MapGenerator.generateMap(120, 120, 3L, 2000, null)), 'S'));
+    }
+}
@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Headless games: the seeded bot and the game it drives are reproducible,
+ * and simulate stops where it should.
+ */
+class SimulationTest {
+    private static final long MAX_TICKS = 20_000;
+
+    @TempDir
+    Path dir;
+
+    // A generated map with enemies, saved as text
+    String mapFile() throws IOException {
+        Path path = dir.resolve("map1.txt");
+        Files.write(path, MapGenerator.generateMap(40, 30, 5L, 150, null).getBytes());
+        return path.toString();
+    }
+
+    // Ticks run, final position, HP and whether the goal was reached
+    static String play(String path, long seed) throws IOException {
+        VisualizedMap map = new VisualizedMap(path, Game.DEFAULT_VIEWPORT_WIDTH, Game.DEFAULT_VIEWPORT_HEIGHT);
+        long ticks = new Game(map, new Simulation.Wanderer(seed)).simulate(MAX_TICKS);
+        return ticks + " ticks at " + map.getWorldX() + "," + map.icon_y + " with " + map.player.getHP() + " HP, won " + map.gameWon;
+    }
+
+    @Test
+    void wandererIsReproducible(){
+        Simulation.Wanderer first = new Simulation.Wanderer(3), second = new Simulation.Wanderer(3);
+        Simulation.Wanderer other = new Simulation.Wanderer(4);
+        boolean differs = false;
+        for(int i = 0; i < 10_000; i++){
+            int keys = first.poll();
+            assertEquals(keys, second.poll());
+            assertEquals(first.pressed(), second.pressed());
+            assertEquals(0, first.pressed() & ~keys);
+            differs |= keys != other.poll();
+        }
+        assertTrue(differs);
+    }
+
+    @Test
+    void sameBotSeedGivesSameGame() throws IOException {
+        String path = mapFile();
+        for(long seed = 1; seed <= 5; seed++){
+            assertEquals(play(path, seed), play(path, seed), "seed " + seed);
+        }
+    }
+
+    @Test
+    void endlessWorldIsReproducible(){
+        String[] outcomes = new String[2];
+        for(int i = 0; i < outcomes.length; i++){
+            VisualizedMap map = new VisualizedMap(9L, Game.ENDLESS_HEIGHT, Game.DEFAULT_VIEWPORT_WIDTH, Game.DEFAULT_VIEWPORT_HEIGHT);
+            long ticks = new Game(map, new Simulation.Wanderer(9)).simulate(5_000);
+            outcomes[i] = ticks + " " + map.getWorldX() + "," + map.icon_y + " " + map.player.getHP();
+        }
+        assertEquals(outcomes[0], outcomes[1]);
+    }
+
+    @Test
+    void simulateRunsToMaxTicksThenResumes() throws IOException {
+        VisualizedMap map = new VisualizedMap(mapFile(), Game.DEFAULT_VIEWPORT_WIDTH, Game.DEFAULT_VIEWPORT_HEIGHT);
+        Game game = new Game(map, new InputSource(){
+            public int poll(){ return 0; }
+            public int pressed(){ return 0; }
+        });
+        assertEquals(100, game.simulate(100));
+        assertFalse(game.isOver());
+        assertEquals(50, game.simulate(50));
+    }
+
+    @Test
+    void exhaustedInputEndsTheGame() throws IOException {
+        VisualizedMap map = new VisualizedMap(mapFile(), Game.DEFAULT_VIEWPORT_WIDTH, Game.DEFAULT_VIEWPORT_HEIGHT);
+        Game game = new Game(map, new InputSource(){
+            private int polls = 0;
+            public int poll(){ polls++; return 0; }
+            public int pressed(){ return 0; }
+            public boolean isExhausted(){ return polls >= 30; }
+        });
+        assertEquals(30, game.simulate(MAX_TICKS));
+        assertTrue(game.isOver());
+    }
+}
@@ -0,0 +1,232 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * WaveFunctionCollapse: the compiled support table, solved grids obeying
+ * the neighbour rules they were compiled from, the entropy index
+ * staying in step with the domains, and the trail undoing decisions.
+ */
+class WaveFunctionCollapseTest {
+    private static final char WALL = '#', EMPTY = '+', SPIKE = '*';
+    private static final char[] TILES = {WALL, EMPTY, SPIKE};
+
+    // MapGenerator's rules: walls and spikes never touch, empty goes next to anything
+    static Map<Character, Map<String, Set<Character>>> mapRules(){
+        Map<Character, Set<Character>> allowed = new HashMap<>();
+        allowed.put(WALL, new HashSet<>(Arrays.asList(WALL, EMPTY)));
+        allowed.put(EMPTY, new HashSet<>(Arrays.asList(WALL, EMPTY, SPIKE)));
+        allowed.put(SPIKE, new HashSet<>(Arrays.asList(EMPTY, SPIKE)));
+        return symmetric(allowed);
+    }
+
+    static Map<Character, Map<String, Set<Character>>> symmetric(Map<Character, Set<Character>> allowed){
+        Map<Character, Map<String, Set<Character>>> rules = new HashMap<>();
+        for(Map.Entry<Character, Set<Character>> tile : allowed.entrySet()){
+            Map<String, Set<Character>> byDirection = new HashMap<>();
+            for(String direction : WaveFunctionCollapse.DIRECTION_NAMES){
+                byDirection.put(direction, tile.getValue());
+            }
+            rules.put(tile.getKey(), byDirection);
+        }
+        return rules;
+    }
+
+    // Three colours, no two neighbours alike: solvable, but random choices
+    // regularly box a cell in, so the solver has to backtrack
+    static Map<Character, Map<String, Set<Character>>> colouringRules(){
+        Map<Character, Set<Character>> allowed = new HashMap<>();
+        allowed.put('r', new HashSet<>(Arrays.asList('g', 'b')));
+        allowed.put('g', new HashSet<>(Arrays.asList('r', 'b')));
+        allowed.put('b', new HashSet<>(Arrays.asList('r', 'g')));
+        return symmetric(allowed);
+    }
+
+    private static final char[] COLOURS = {'r', 'g', 'b'};
+
+    // Every pair of neighbours in the grid is allowed by the rules
+    static void assertObeys(char[][] grid, Map<Character, Map<String, Set<Character>>> rules){
+        for(int y = 0; y < grid.length; y++){
+            for(int x = 0; x < grid[y].length; x++){
+                for(int dir = 0; dir < WaveFunctionCollapse.DX.length; dir++){
+                    int nx = x + WaveFunctionCollapse.DX[dir];
+                    int ny = y + WaveFunctionCollapse.DY[dir];
+                    if(ny < 0 || ny >= grid.length || nx < 0 || nx >= grid[ny].length) continue;
+                    assertTrue(rules.get(grid[y][x]).get(WaveFunctionCollapse.DIRECTION_NAMES[dir]).contains(grid[ny][nx]),
+                        grid[y][x] + " " + WaveFunctionCollapse.DIRECTION_NAMES[dir] + " of it " + grid[ny][nx] + " at (" + x + ", " + y + ")");
+                }
+            }
+        }
+    }
+
+    @Test
+    void supportOfADomainIsTheUnionOfItsTiles(){
+        int[][] support = WaveFunctionCollapse.compileRules(TILES, mapRules());
+        int wall = 1, empty = 2, spike = 4;
+        for(int dir = 0; dir < 4; dir++){
+            assertEquals(wall | empty, support[dir][wall]);
+            assertEquals(wall | empty | spike, support[dir][empty]);
+            assertEquals(empty | spike, support[dir][spike]);
+            assertEquals(wall | empty | spike, support[dir][wall | spike]);
+            assertEquals(0, support[dir][0]);
+        }
+    }
+
+    @Test
+    void tooManyTilesAreRejected(){
+        char[] tiles = "abcdefghi".toCharArray();
+        Map<Character, Set<Character>> allowed = new HashMap<>();
+        for(char tile : tiles) allowed.put(tile, new HashSet<>());
+        assertThrows(IllegalArgumentException.class, () -> WaveFunctionCollapse.compileRules(tiles, symmetric(allowed)));
+    }
+
+    @Test
+    void solvedGridObeysTheRulesAroundFixedCells(){
+        Map<Character, Map<String, Set<Character>>> rules = mapRules();
+        int[][] support = WaveFunctionCollapse.compileRules(TILES, rules);
+        for(long seed = 0; seed < 10; seed++){
+            WaveFunctionCollapse wfc = new WaveFunctionCollapse(40, 30, TILES, support, new Random(seed));
+            for(int x = 0; x < 40; x++){
+                assertTrue(wfc.fix(x, 0, WALL));
+                assertTrue(wfc.fix(x, 29, WALL));
+            }
+            wfc.run();
+
+            assertEquals(0, wfc.remainingCells());
+            char[][] grid = wfc.toMap();
+            assertObeys(grid, rules);
+            for(int x = 0; x < 40; x++){
+                assertEquals(WALL, grid[0][x]);
+                assertEquals(WALL, grid[29][x]);
+            }
+        }
+    }
+
+    @Test
+    void pinnedCellsKeepTheirValue(){
+        int[][] support = WaveFunctionCollapse.compileRules(TILES, mapRules());
+        WaveFunctionCollapse wfc = new WaveFunctionCollapse(10, 10, TILES, support, new Random(1));
+        wfc.pin(4, 4, SPIKE);
+        wfc.pin(0, 9, WALL);
+        wfc.run();
+        assertEquals(SPIKE, wfc.valueAt(4, 4));
+        assertEquals(WALL, wfc.valueAt(0, 9));
+    }
+
+    @Test
+    void sameRandomGivesSameGrid(){
+        int[][] support = WaveFunctionCollapse.compileRules(TILES, mapRules());
+        WaveFunctionCollapse a = new WaveFunctionCollapse(25, 25, TILES, support, new Random(5));
+        WaveFunctionCollapse b = new WaveFunctionCollapse(25, 25, TILES, support, new Random(5));
+        a.run();
+        b.run();
+        assertArrayEquals(a.toMap(), b.toMap());
+    }
+
+    @Test
+    void entropyIndexMatchesDomainsAfterFixes(){
+        int[][] support = WaveFunctionCollapse.compileRules(TILES, mapRules());
+        WaveFunctionCollapse wfc = new WaveFunctionCollapse(30, 20, TILES, support, new Random(3));
+        assertTrue(wfc.indexIsConsistent());
+        assertEquals(30 * 20, wfc.remainingCells());
+
+        // Each fix narrows its neighbours, moving them down the buckets
+        Random rand = new Random(4);
+        for(int i = 0; i < 40; i++){
+            wfc.fix(rand.nextInt(30), rand.nextInt(20), TILES[rand.nextInt(TILES.length)]);
+            assertTrue(wfc.indexIsConsistent(), "after fix " + i);
+        }
+
+        int open = 0;
+        for(int y = 0; y < 20; y++){
+            for(int x = 0; x < 30; x++){
+                if(Integer.bitCount(wfc.domainAt(x, y)) > 1) open++;
+            }
+        }
+        assertEquals(open, wfc.remainingCells());
+    }
+
+    @Test
+    void entropyIndexMatchesDomainsAfterBacktracking(){
+        int[][] support = WaveFunctionCollapse.compileRules(COLOURS, colouringRules());
+        for(long seed = 0; seed < 10; seed++){
+            WaveFunctionCollapse wfc = new WaveFunctionCollapse(60, 60, COLOURS, support, new Random(seed));
+            wfc.run();
+            assertTrue(wfc.stats.backtracks > 0, "seed " + seed + " never backtracked");
+            assertTrue(wfc.indexIsConsistent(), "seed " + seed);
+            assertEquals(0, wfc.remainingCells());
+        }
+    }
+
+    @Test
+    void entropyIndexMatchesDomainsAfterRestarts(){
+        int[][] support = WaveFunctionCollapse.compileRules(COLOURS, colouringRules());
+        WaveFunctionCollapse wfc = new WaveFunctionCollapse(30, 30, COLOURS, support, new Random(2));
+        wfc.setMaxBacktrackDepth(0);
+        wfc.run();
+        assertTrue(wfc.stats.restarts > 0);
+        assertTrue(wfc.indexIsConsistent());
+        assertObeys(wfc.toMap(), colouringRules());
+    }
+
+    static int[] domains(WaveFunctionCollapse wfc, int width, int height){
+        int[] domains = new int[width * height];
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                domains[y * width + x] = wfc.domainAt(x, y);
+            }
+        }
+        return domains;
+    }
+
+    @Test
+    void undoingTheTrailRestoresEveryDomain(){
+        int[][] support = WaveFunctionCollapse.compileRules(TILES, mapRules());
+        WaveFunctionCollapse wfc = new WaveFunctionCollapse(20, 20, TILES, support, new Random(5));
+        wfc.fix(10, 10, WALL);
+        int[] before = domains(wfc, 20, 20);
+        int remaining = wfc.remainingCells();
+
+        int outer = wfc.trailMark();
+        assertTrue(wfc.decide(3, 3, EMPTY));
+        int[] middle = domains(wfc, 20, 20);
+
+        int inner = wfc.trailMark();
+        Random rand = new Random(6);
+        for(int i = 0; i < 50; i++){
+            int x = rand.nextInt(20), y = rand.nextInt(20);
+            int domain = wfc.domainAt(x, y);
+            if(Integer.bitCount(domain) < 2) continue;
+            if(!wfc.decide(x, y, TILES[Integer.numberOfTrailingZeros(domain)])) break;
+        }
+        assertNotEquals(inner, wfc.trailMark());
+
+        wfc.undoTo(inner);
+        assertArrayEquals(middle, domains(wfc, 20, 20));
+        assertTrue(wfc.indexIsConsistent());
+
+        wfc.undoTo(outer);
+        assertArrayEquals(before, domains(wfc, 20, 20));
+        assertEquals(remaining, wfc.remainingCells());
+        assertTrue(wfc.indexIsConsistent());
+    }
+
+    @Test
+    void undoingAContradictionRestoresEveryDomain(){
+        int[][] support = WaveFunctionCollapse.compileRules(COLOURS, colouringRules());
+        WaveFunctionCollapse wfc = new WaveFunctionCollapse(3, 3, COLOURS, support, new Random(7));
+        int[] before = domains(wfc, 3, 3);
+        int mark = wfc.trailMark();
+
+        // The centre's four neighbours use all three colours, leaving it none
+        assertTrue(wfc.decide(1, 0, 'r'));
+        assertTrue(wfc.decide(0, 1, 'g'));
+        assertFalse(wfc.decide(2, 1, 'b'));
+
+        wfc.undoTo(mark);
+        assertArrayEquals(before, domains(wfc, 3, 3));
+        assertTrue(wfc.indexIsConsistent());
+    }
+}